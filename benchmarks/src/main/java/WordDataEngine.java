@@ -0,0 +1,83 @@
+import java.io.IOException;
+import java.util.List;
+
+import wordfreq.bench.Engine;
+
+/**
+ * The benchmarks' way in to the lab classes, it has to be in the unnamed package to see them. See Engine for why.
+ *
+ * @author Kevin Becker
+ */
+public class WordDataEngine implements Engine
+{
+    private WordDataImpl data;
+
+    @Override
+    public void load(String fileName) throws IOException
+    {
+        data = new WordDataImpl(fileName);
+    }
+
+    @Override
+    public void awaitIndexes()
+    {
+        data.awaitIndexes();
+    }
+
+    @Override
+    public List<String> words()
+    {
+        return List.copyOf(data.words());
+    }
+
+    @Override
+    public long countOverall(String word)
+    {
+        return data.getCountFor(word);
+    }
+
+    @Override
+    public long countYear(String word, int year)
+    {
+        return data.getCountFor(word, year);
+    }
+
+    @Override
+    public long countRange(String word, int startYear, int endYear)
+    {
+        return data.getCountFor(word, startYear, endYear);
+    }
+
+    @Override
+    public int rankOverall(String word)
+    {
+        return data.getRankFor(word);
+    }
+
+    @Override
+    public int rankRange(String word, int startYear, int endYear)
+    {
+        return data.getRankFor(word, startYear, endYear);
+    }
+
+    @Override
+    public void series(String word, int startYear, int endYear, long[] out)
+    {
+        data.getSeries(word, startYear, endYear, out);
+    }
+
+    @Override
+    public long iterateWords()
+    {
+        long length = 0;
+        for(String word : data.words())
+            length += word.length();
+        return length;
+    }
+
+    @Override
+    public double zipf()
+    {
+        return ZipfAnalyzer.analyze(data.getRankedCounts()).mean;
+    }
+}
@@ -0,0 +1,123 @@
+package wordfreq.bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+
+/**
+ * The data files the benchmarks run on. A dataset is named by one of
+ * <ul>
+ *     <li><code>q</code> (or the name of any other file in the data directory, without .csv)</li>
+ *     <li><code>synthetic-<em>words</em>x<em>years</em></code>, a generated file, for example
+ *         <code>synthetic-1000000x10</code> has a million words with ten years each</li>
+ * </ul>
+ * The data directory is found by looking up from the working directory for data/q.csv, or it can be given with
+ * <code>-Dwordfreq.data=<em>directory</em></code>. Generated files are kept in the temporary directory and reused.
+ *
+ * @author Kevin Becker
+ */
+public final class Datasets
+{
+    // The first year of every word in a synthetic dataset
+    public static final int SYNTHETIC_FIRST_YEAR = 1800;
+
+    private Datasets()
+    {
+    }
+
+    /**
+     * Finds or makes the file of a dataset.
+     * @param name the name of the dataset.
+     * @return The path of its 1-gram file.
+     */
+    public static String resolve(String name)
+    {
+        if(name.startsWith("synthetic-"))
+        {
+            String[] size = name.substring("synthetic-".length()).split("x");
+            return synthetic(Integer.parseInt(size[0]), Integer.parseInt(size[1])).toString();
+        }
+        return dataDirectory().resolve(name + ".csv").toString();
+    }
+
+    /**
+     * Generates (or reuses) a synthetic 1-gram file. A word's counts fall off as one over its position in the file,
+     * with some noise, so ranks and the Zipf numbers behave like they do on real data.
+     * @param words the number of distinct words.
+     * @param yearsPerWord the number of consecutive years each word has data for.
+     * @return The path of the file.
+     */
+    public static Path synthetic(int words, int yearsPerWord)
+    {
+        Path file = Paths.get(System.getProperty("java.io.tmpdir"),
+                "wordfreq-synthetic-" + words + "x" + yearsPerWord + ".csv");
+        if(Files.isRegularFile(file))
+            return file;
+
+        // Written under another name first so an interrupted run never leaves half a file behind
+        Path partial = file.resolveSibling(file.getFileName() + ".partial");
+        Random random = new Random(42);
+        try
+        {
+            try(BufferedWriter out = Files.newBufferedWriter(partial, StandardCharsets.UTF_8))
+            {
+                StringBuilder line = new StringBuilder();
+                for(int position = 0; position < words; position++)
+                {
+                    String word = wordFor(position);
+                    long scale = Math.max(1, 100_000_000L / (position + 1));
+                    for(int year = 0; year < yearsPerWord; year++)
+                    {
+                        line.setLength(0);
+                        line.append(word).append(", ").append(SYNTHETIC_FIRST_YEAR + year).append(", ")
+                                .append(1 + (long)(scale * (0.5 + random.nextDouble()))).append('\n');
+                        out.append(line);
+                    }
+                }
+            }
+            Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        return file;
+    }
+
+    /**
+     * Makes a distinct lower case word for every number. The number is scrambled first so that neighbouring words
+     * don't share long prefixes.
+     */
+    private static String wordFor(int number)
+    {
+        StringBuilder word = new StringBuilder();
+        long scrambled = (number * 0x9E3779B1L) & 0xFFFFFFFFL;
+        do
+        {
+            word.append((char)('a' + scrambled % 26));
+            scrambled /= 26;
+        }
+        while(scrambled > 0);
+        return word.toString();
+    }
+
+    private static Path dataDirectory()
+    {
+        String configured = System.getProperty("wordfreq.data");
+        if(configured != null)
+            return Paths.get(configured);
+
+        for(Path directory = Paths.get("").toAbsolutePath(); directory != null; directory = directory.getParent())
+        {
+            if(Files.isRegularFile(directory.resolve("data").resolve("q.csv")))
+                return directory.resolve("data");
+        }
+        return Paths.get("data");
+    }
+}
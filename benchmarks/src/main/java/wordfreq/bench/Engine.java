@@ -0,0 +1,78 @@
+package wordfreq.bench;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The operations of the word data engine that are benchmarked.
+ * <br>
+ * The lab classes (WordData, WordDataImpl, ...) are in the unnamed package, which code in a named package cannot
+ * refer to, and JMH only generates code for benchmarks in a named package. So the benchmarks talk to this interface
+ * and the adapter which implements it (WordDataEngine, in the unnamed package) is created by name. Only that one class
+ * ever implements Engine, so the JIT inlines straight through the calls.
+ *
+ * @author Kevin Becker
+ */
+public interface Engine
+{
+    /**
+     * Creates the adapter over the lab's WordDataImpl.
+     * @return A new Engine with nothing loaded.
+     */
+    static Engine create()
+    {
+        try
+        {
+            return (Engine)Class.forName("WordDataEngine").getDeclaredConstructor().newInstance();
+        }
+        catch(ReflectiveOperationException e)
+        {
+            throw new IllegalStateException("The WordDataEngine adapter is missing", e);
+        }
+    }
+
+    /**
+     * Reads a data file the same way WordFreq does.
+     * @param fileName the 1-gram file or snapshot.
+     * @throws IOException if the file cannot be read.
+     */
+    void load(String fileName) throws IOException;
+
+    /**
+     * Waits for the indexes load starts building in the background.
+     */
+    void awaitIndexes();
+
+    /**
+     * @return Every word that was loaded.
+     */
+    List<String> words();
+
+    long countOverall(String word);
+
+    long countYear(String word, int year);
+
+    long countRange(String word, int startYear, int endYear);
+
+    int rankOverall(String word);
+
+    int rankRange(String word, int startYear, int endYear);
+
+    /**
+     * Fills in a word's count for every year of a range.
+     * @param out gets the count of year y at out[y - startYear].
+     */
+    void series(String word, int startYear, int endYear, long[] out);
+
+    /**
+     * Walks every word the way checkZipf does.
+     * @return A value made from every word, so the walk cannot be optimized away.
+     */
+    long iterateWords();
+
+    /**
+     * Runs the computation behind the zipf command, without writing the table.
+     * @return The mean difference, so the work cannot be optimized away.
+     */
+    double zipf();
+}
@@ -0,0 +1,78 @@
+package wordfreq.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how long it takes to read a data file into a WordDataImpl. Every invocation is a whole load, so it is timed
+ * as a single shot rather than in a loop.
+ * <br>
+ * WordDataImpl returns as soon as counts can be answered and sorts the overall ranks and builds the prefix index in
+ * the background. load waits for those too, so it is the time until every query is ready. parse only measures the
+ * time until the constructor returns, and the background work is waited for after the measurement so that it never
+ * runs into the next invocation.
+ *
+ * @author Kevin Becker
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class LoadBenchmark
+{
+    @Param({"q", "synthetic-100000x20", "synthetic-1000000x10"})
+    public String dataset;
+
+    private String fileName;
+    private Engine parsed;
+
+    @Setup(Level.Trial)
+    public void findFile()
+    {
+        // Generating a synthetic file is done here so it is never part of a measurement
+        fileName = Datasets.resolve(dataset);
+    }
+
+    @Benchmark
+    public Engine load() throws IOException
+    {
+        Engine engine = Engine.create();
+        engine.load(fileName);
+        engine.awaitIndexes();
+        return engine;
+    }
+
+    @Benchmark
+    public Engine parse() throws IOException
+    {
+        parsed = Engine.create();
+        parsed.load(fileName);
+        return parsed;
+    }
+
+    @TearDown(Level.Invocation)
+    public void awaitParsed()
+    {
+        if(parsed != null)
+        {
+            parsed.awaitIndexes();
+            parsed = null;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package wordfreq.bench;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the queries behind WordFreq's commands on data that is already loaded. The queried words are a fixed random
+ * sample of the vocabulary which every benchmark steps through, so no single word is left hot in the cache.
+ * <br>
+ * The zipf benchmark and rankRangeFirst are a pass over the whole vocabulary per call, so their times grow with the
+ * dataset, while the counts and the overall rank should not. rankRange always asks about the same range, which is
+ * ranked and cached the second time it is asked about, so it measures a cache hit. rankRangeFirst steps through every
+ * range of years in the century instead, far more than are remembered, so every call is a range asked about for the
+ * first time and is answered with a single pass.
+ *
+ * @author Kevin Becker
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class QueryBenchmark
+{
+    // The number of words sampled, a power of two so stepping through them is a mask
+    private static final int SAMPLE_SIZE = 1024;
+    // The years queried, which all of the datasets have data in
+    private static final int YEAR = 1810;
+    private static final int START_YEAR = 1800;
+    private static final int END_YEAR = 1899;
+
+    @Param({"q", "synthetic-100000x20", "synthetic-1000000x10"})
+    public String dataset;
+
+    private Engine engine;
+    private String[] sample;
+    private int next;
+    private long[] series = new long[END_YEAR - START_YEAR + 1];
+    private int rangeStart = START_YEAR;
+    private int rangeEnd = START_YEAR;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException
+    {
+        engine = Engine.create();
+        engine.load(Datasets.resolve(dataset));
+
+        List<String> words = engine.words();
+        Random random = new Random(7);
+        sample = new String[SAMPLE_SIZE];
+        for(int index = 0; index < SAMPLE_SIZE; index++)
+            sample[index] = words.get(random.nextInt(words.size()));
+    }
+
+    private String nextWord()
+    {
+        return sample[next++ & (SAMPLE_SIZE - 1)];
+    }
+
+    @Benchmark
+    public long countOverall()
+    {
+        return engine.countOverall(nextWord());
+    }
+
+    @Benchmark
+    public long countYear()
+    {
+        return engine.countYear(nextWord(), YEAR);
+    }
+
+    @Benchmark
+    public long countRange()
+    {
+        return engine.countRange(nextWord(), START_YEAR, END_YEAR);
+    }
+
+    @Benchmark
+    public long[] series()
+    {
+        engine.series(nextWord(), START_YEAR, END_YEAR, series);
+        return series;
+    }
+
+    @Benchmark
+    public int rankOverall()
+    {
+        return engine.rankOverall(nextWord());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int rankRange()
+    {
+        return engine.rankRange(nextWord(), START_YEAR, END_YEAR);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int rankRangeFirst()
+    {
+        // Steps through every range within START_YEAR to END_YEAR, each one comes back only after all of the others
+        if(++rangeEnd > END_YEAR)
+        {
+            rangeStart = rangeStart == END_YEAR ? START_YEAR : rangeStart + 1;
+            rangeEnd = rangeStart;
+        }
+        return engine.rankRange(nextWord(), rangeStart, rangeEnd);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long iterateWords()
+    {
+        return engine.iterateWords();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public double zipf()
+    {
+        return engine.zipf();
+    }
+}
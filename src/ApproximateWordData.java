@@ -0,0 +1,546 @@
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * An ApproximateWordData answers from sketches instead of the data itself, so its memory is fixed by its settings no
+ * matter how many words or lines are read in. The files are read once, a block at a time, and nothing from them is
+ * kept except what goes into the sketches.
+ * <br>
+ * Each decade of the data has a CountMinSketch and a SpaceSaving:
+ * <ul>
+ *     <li>The sketch holds a count for each word and year, and a count for each word over the whole decade. A range
+ *     of years is added up from the decade counts of the decades it covers completely and the year counts of the
+ *     rest, so even the widest range is only a few lookups per decade.</li>
+ *     <li>The SpaceSaving keeps the most common words of the decade. Only those words can be ranked, and the top
+ *     words of a range come from the words kept for the decades it touches.</li>
+ * </ul>
+ * A count is never too low, and getCountErrorBound says how much too high it can be, which holds with the confidence
+ * in the statistics. A word that isn't in the data can have a count that isn't 0. Words that aren't kept for any
+ * decade aren't in words() and are UNRANKED.
+ * <br>
+ * The same as a WordDataImpl, the first value for a year is the one that is used, but only within one run of a word's
+ * lines. A word that shows up in several places (in another case, split over two blocks or in several files) has each
+ * run added, so a duplicate year in different runs is counted twice. totalWords is exact.
+ * <br>
+ * The memory used is the sketch size and kept words times the number of decades, which grows with the span of years in
+ * the data, not with the vocabulary.
+ *
+ * @author Kevin Becker
+ */
+class ApproximateWordData implements WordData
+{
+    // The bytes in each decade's sketch if nothing else is asked for
+    static final int DEFAULT_SKETCH_BYTES = 512 * 1024;
+    // The rows in each sketch, an estimate is within its bound with probability 1 - e^-depth
+    static final int SKETCH_DEPTH = 4;
+    // The most common words kept for each decade
+    static final int DEFAULT_HEAVY_HITTERS = 1000;
+    private static final int YEARS_PER_DECADE = 10;
+
+    /**
+     * The sketch and most common words of one decade.
+     */
+    private static class Decade
+    {
+        CountMinSketch sketch;
+        SpaceSaving heavyHitters;
+    }
+
+    /**
+     * The kept words ranked over a range of years.
+     */
+    private static class Ranking
+    {
+        int startYear;
+        int endYear;
+        List<String> words = new ArrayList<>();
+        long[] counts;
+        Map<String, Integer> rankOfWord = new HashMap<>();
+    }
+
+    private int sketchWidth;
+    private int heavyHitterCount;
+    // The decades in the data, by year / 10
+    private TreeMap<Integer, Decade> decades = new TreeMap<>();
+    private long totalWords = 0;
+    private long linesRead = 0;
+    private int duplicateYears = 0;
+
+    private Ranking overallRanking;
+    // The last range that was ranked, a new range replaces it
+    private volatile Ranking lastRanking;
+    private WordDataStats stats = new WordDataStats();
+
+    /**
+     * Reads in 1-gram files with the default sketch size.
+     * @param fileNames the files, directories or patterns to read in.
+     * @throws FileNotFoundException if a file cannot be opened.
+     */
+    ApproximateWordData(List<String> fileNames) throws FileNotFoundException
+    {
+        this(fileNames, DEFAULT_SKETCH_BYTES, DEFAULT_HEAVY_HITTERS);
+    }
+
+    /**
+     * Reads in 1-gram files, one block at a time, into a sketch and the most common words of each decade.
+     * @param fileNames the files, directories or patterns to read in.
+     * @param sketchBytes about how many bytes each decade's sketch can use. A bigger sketch has a smaller error.
+     * @param heavyHitters how many of the most common words are kept for each decade.
+     * @throws FileNotFoundException if a file cannot be opened.
+     * @throws IllegalArgumentException if a file is a snapshot, which only holds exact data.
+     */
+    ApproximateWordData(List<String> fileNames, int sketchBytes, int heavyHitters) throws FileNotFoundException
+    {
+        this.sketchWidth = Math.max(16, sketchBytes / (SKETCH_DEPTH * Long.BYTES));
+        this.heavyHitterCount = heavyHitters;
+        List<String> files = NGramLoader.expand(fileNames);
+        for(String file : files)
+        {
+            if(WordDataSnapshot.isSnapshot(file))
+                throw new IllegalArgumentException(file + " is a snapshot, only 1-gram files can be read approximately");
+        }
+        if(files.size() == 1)
+            System.out.println("Reading in file \"" + files.get(0) + "\" approximately...");
+        else
+            System.out.println("Reading in " + files.size() + " files approximately...");
+
+        NGramLoader loader = new NGramLoader();
+        RunSummer summer = new RunSummer();
+        long bytesRead = 0;
+        long phaseStart = System.nanoTime();
+        for(String file : files)
+        {
+            loader.scan(file, (chunk, blockStart) -> sketchChunk(chunk, summer));
+            bytesRead += loader.getBytesRead();
+        }
+        long nanos = System.nanoTime() - phaseStart;
+        stats.recordPhase("scan and sketch", nanos);
+
+        if(duplicateYears > 0)
+            System.out.println(duplicateYears + " duplicate years were found, the first value is being used.");
+        System.out.printf("Finished reading in file. (%.1f MB at %.1f MB/s, %d decades sketched)%n",
+                bytesRead / (1024.0 * 1024.0), nanos == 0 ? 0 : (bytesRead / (1024.0 * 1024.0)) / (nanos / 1e9),
+                decades.size());
+
+        phaseStart = System.nanoTime();
+        overallRanking = rank(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        stats.recordPhase("overall ranking", System.nanoTime() - phaseStart);
+    }
+
+    /**
+     * Adds the runs of a block to the sketches. A run's lines come back from the summer in year order, so each decade's
+     * lines are together.
+     * @param chunk the parsed block.
+     * @param summer finds the lines to keep in a run.
+     */
+    private void sketchChunk(ParsedChunk chunk, RunSummer summer)
+    {
+        for(int run = 0; run < chunk.getRunCount(); run++)
+        {
+            String word = chunk.getRunWord(run);
+            long hash = CountMinSketch.hash(word);
+            int kept = summer.keep(chunk, run);
+            duplicateYears += summer.duplicates;
+
+            Decade decade = null;
+            int decadeNumber = 0;
+            long decadeTotal = 0;
+            for(int index = 0; index < kept; index++)
+            {
+                int line = summer.keptLine(index);
+                int year = chunk.getYear(line);
+                long count = chunk.getCount(line);
+                if(decade == null || Math.floorDiv(year, YEARS_PER_DECADE) != decadeNumber)
+                {
+                    addDecadeTotal(decade, word, hash, decadeTotal);
+                    decadeNumber = Math.floorDiv(year, YEARS_PER_DECADE);
+                    decade = decade(decadeNumber);
+                    decadeTotal = 0;
+                }
+                decade.sketch.add(yearKey(hash, year), count);
+                decadeTotal += count;
+            }
+            addDecadeTotal(decade, word, hash, decadeTotal);
+        }
+
+        for(int line = 0; line < chunk.getLineCount(); line++)
+            totalWords += chunk.getCount(line);
+        linesRead += chunk.getLineCount();
+    }
+
+    /**
+     * Adds a word's count for a whole decade to the decade's sketch and most common words.
+     */
+    private static void addDecadeTotal(Decade decade, String word, long hash, long total)
+    {
+        if(decade == null)
+            return;
+        decade.sketch.add(hash, total);
+        decade.heavyHitters.add(word, total);
+    }
+
+    /**
+     * Gets the sketch and most common words of a decade, making them the first time the decade is seen.
+     */
+    private Decade decade(int decadeNumber)
+    {
+        Decade decade = decades.get(decadeNumber);
+        if(decade == null)
+        {
+            decade = new Decade();
+            decade.sketch = new CountMinSketch(sketchWidth, SKETCH_DEPTH);
+            decade.heavyHitters = new SpaceSaving(heavyHitterCount);
+            decades.put(decadeNumber, decade);
+        }
+        return decade;
+    }
+
+    /**
+     * Gets the key of a word's count for one year. The word's hash alone is the key of its count for the decade, and
+     * the year is offset so that no year gives that same key.
+     */
+    private static long yearKey(long hash, int year)
+    {
+        return CountMinSketch.combine(hash, (long)year - Integer.MIN_VALUE + 1);
+    }
+
+    /**
+     * Gets the decades that have some years in a range.
+     */
+    private NavigableMap<Integer, Decade> decadesIn(int startYear, int endYear)
+    {
+        if(startYear > endYear)
+            return Collections.emptyNavigableMap();
+        return decades.subMap(Math.floorDiv(startYear, YEARS_PER_DECADE), true,
+                Math.floorDiv(endYear, YEARS_PER_DECADE), true);
+    }
+
+    /**
+     * Estimates the count of a word over a range of years. Decades the range covers completely are one lookup each,
+     * and the decade's most common words can make that lookup's estimate lower, since neither is ever too low.
+     * @param word the lower case word.
+     * @param startYear the first year of the range.
+     * @param endYear the last year of the range.
+     * @return The estimate, which is never too low.
+     */
+    private long estimate(String word, int startYear, int endYear)
+    {
+        long hash = CountMinSketch.hash(word);
+        long estimate = 0;
+        for(Map.Entry<Integer, Decade> entry : decadesIn(startYear, endYear).entrySet())
+        {
+            long first = (long)entry.getKey() * YEARS_PER_DECADE;
+            long last = first + YEARS_PER_DECADE - 1;
+            CountMinSketch sketch = entry.getValue().sketch;
+            if(startYear <= first && endYear >= last)
+                estimate += Math.min(sketch.estimate(hash), entry.getValue().heavyHitters.upperBound(word));
+            else
+            {
+                for(long year = Math.max(startYear, first); year <= Math.min(endYear, last); year++)
+                    estimate += sketch.estimate(yearKey(hash, (int)year));
+            }
+        }
+        return estimate;
+    }
+
+    /**
+     * Adds up how much too high an estimate over a range of years can be: the bound of each lookup estimate makes.
+     */
+    private long errorBound(int startYear, int endYear)
+    {
+        long bound = 0;
+        for(Map.Entry<Integer, Decade> entry : decadesIn(startYear, endYear).entrySet())
+        {
+            long first = (long)entry.getKey() * YEARS_PER_DECADE;
+            long last = first + YEARS_PER_DECADE - 1;
+            long lookups = startYear <= first && endYear >= last ? 1
+                    : Math.min(endYear, last) - Math.max(startYear, first) + 1;
+            bound += lookups * entry.getValue().sketch.getErrorBound();
+        }
+        return bound;
+    }
+
+    /**
+     * Ranks the most common words of every decade a range of years touches by their estimated counts in the range.
+     * The last range ranked is kept, so asking about the same range again is a lookup.
+     * @param startYear the first year of the range.
+     * @param endYear the last year of the range.
+     * @return The ranking, where words with the same estimate are in alphabetical order.
+     */
+    private Ranking rank(int startYear, int endYear)
+    {
+        if(overallRanking != null && overallRanking.startYear == startYear && overallRanking.endYear == endYear)
+            return overallRanking;
+        Ranking last = lastRanking;
+        if(last != null && last.startYear == startYear && last.endYear == endYear)
+            return last;
+
+        Set<String> candidates = new LinkedHashSet<>();
+        for(Decade decade : decadesIn(startYear, endYear).values())
+            candidates.addAll(decade.heavyHitters.wordsByCount());
+        Map<String, Long> estimates = new HashMap<>();
+        for(String word : candidates)
+        {
+            long estimate = estimate(word, startYear, endYear);
+            if(estimate > 0)
+                estimates.put(word, estimate);
+        }
+
+        Ranking ranking = new Ranking();
+        ranking.startYear = startYear;
+        ranking.endYear = endYear;
+        ranking.words.addAll(estimates.keySet());
+        ranking.words.sort((a, b) -> estimates.get(a).equals(estimates.get(b)) ? a.compareTo(b)
+                : Long.compare(estimates.get(b), estimates.get(a)));
+        ranking.counts = new long[ranking.words.size()];
+        for(int index = 0; index < ranking.counts.length; index++)
+        {
+            ranking.counts[index] = estimates.get(ranking.words.get(index));
+            ranking.rankOfWord.put(ranking.words.get(index), index + 1);
+        }
+
+        lastRanking = ranking;
+        return ranking;
+    }
+
+    /**
+     * Prints the estimated count of each of the most common words for every year it has one, in overall rank order.
+     * The format is the same as the other WordData's, after a line giving the error of a year's count in each decade.
+     */
+    @Override
+    public void dumpData()
+    {
+        StringBuilder bounds = new StringBuilder("Estimated counts, each year's count is at most this much too high:");
+        for(Map.Entry<Integer, Decade> entry : decades.entrySet())
+            bounds.append(' ').append((long)entry.getKey() * YEARS_PER_DECADE).append("s=")
+                    .append(entry.getValue().sketch.getErrorBound());
+        System.out.println(bounds);
+
+        for(String word : overallRanking.words)
+        {
+            long hash = CountMinSketch.hash(word);
+            for(Map.Entry<Integer, Decade> entry : decades.entrySet())
+            {
+                long first = (long)entry.getKey() * YEARS_PER_DECADE;
+                for(long year = first; year < first + YEARS_PER_DECADE; year++)
+                {
+                    long count = entry.getValue().sketch.estimate(yearKey(hash, (int)year));
+                    if(count > 0)
+                        System.out.println("word='" + word + "', count=" + count + ", year=" + year);
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects the words that were kept as the most common of some decade, in overall rank order. Every other word is
+     * left out.
+     * @return A read only view of the kept words.
+     */
+    @Override
+    public Collection<String> words()
+    {
+        return Collections.unmodifiableList(overallRanking.words);
+    }
+
+    /**
+     * Gives the total number of occurrences of every line read in, which is exact.
+     * @return A long of the number of words that were read in.
+     */
+    @Override
+    public long totalWords()
+    {
+        return totalWords;
+    }
+
+    /**
+     * Gets the rank of a word for the entire data set among the kept words.
+     * @param word the word to be looked up.
+     * @return An int representing the rank of the word, or UNRANKED if it wasn't kept.
+     */
+    @Override
+    public int getRankFor(String word)
+    {
+        long start = System.nanoTime();
+        int rank = overallRanking.rankOfWord.getOrDefault(word.toLowerCase(), UNRANKED);
+        stats.record(WordDataStats.Query.RANK, start);
+        return rank;
+    }
+
+    /**
+     * Gets the rank of a word for a given year period among the kept words of the decades the period touches.
+     * @param word the word to be looked up.
+     * @param startYear the first year of the range of time desired.
+     * @param endYear the last year of the range of time desired.
+     * @return An int representing the rank of the word in the range, or UNRANKED if it wasn't kept.
+     */
+    @Override
+    public int getRankFor(String word, int startYear, int endYear)
+    {
+        long start = System.nanoTime();
+        int rank = rank(startYear, endYear).rankOfWord.getOrDefault(word.toLowerCase(), UNRANKED);
+        stats.record(WordDataStats.Query.RANK_RANGE, start);
+        return rank;
+    }
+
+    /**
+     * Gets the rank of a word for a given single year. This is only here so that it is timed separately from ranges
+     * of years.
+     * @param word the word to be looked up.
+     * @param year the year to be considered.
+     * @return An int representing the rank of the word in the year, or UNRANKED if it wasn't kept.
+     */
+    @Override
+    public int getRankFor(String word, int year)
+    {
+        long start = System.nanoTime();
+        int rank = rank(year, year).rankOfWord.getOrDefault(word.toLowerCase(), UNRANKED);
+        stats.record(WordDataStats.Query.RANK_YEAR, start);
+        return rank;
+    }
+
+    /**
+     * Gets the estimated total count of every kept word in overall rank order.
+     * @return A long array where index r holds the count of the word ranked r + 1.
+     */
+    @Override
+    public long[] getRankedCounts()
+    {
+        return overallRanking.counts.clone();
+    }
+
+    /**
+     * Gets the estimated count of every kept word used in a given year period, highest first.
+     * @param startYear the first year of the range of time desired.
+     * @param endYear the last year of the range of time desired.
+     * @return A long array where index r holds the count of the word ranked r + 1 in the range.
+     */
+    @Override
+    public long[] getRankedCounts(int startYear, int endYear)
+    {
+        return rank(startYear, endYear).counts.clone();
+    }
+
+    /**
+     * Gets the most common words for a given year period from the kept words.
+     * @param k how many words are wanted.
+     * @param startYear the first year of the range of time desired.
+     * @param endYear the last year of the range of time desired.
+     * @return A List of up to k words, most common first.
+     */
+    @Override
+    public List<String> topWords(int k, int startYear, int endYear)
+    {
+        List<String> ranked = rank(startYear, endYear).words;
+        return new ArrayList<>(ranked.subList(0, Math.max(0, Math.min(k, ranked.size()))));
+    }
+
+    /**
+     * Estimates the number of times a word appeared for the entire data set.
+     * @param word the word to be looked up.
+     * @return The estimate, at most getCountErrorBound too high.
+     */
+    @Override
+    public long getCountFor(String word)
+    {
+        long start = System.nanoTime();
+        long count = estimate(word.toLowerCase(), Integer.MIN_VALUE, Integer.MAX_VALUE);
+        stats.record(WordDataStats.Query.COUNT, start);
+        return count;
+    }
+
+    /**
+     * Estimates the count of a word for a given single year.
+     * @param word the word to be looked up.
+     * @param year the year to be considered.
+     * @return The estimate, at most getCountErrorBound too high.
+     */
+    @Override
+    public long getCountFor(String word, int year)
+    {
+        long start = System.nanoTime();
+        long count = estimate(word.toLowerCase(), year, year);
+        stats.record(WordDataStats.Query.COUNT_YEAR, start);
+        return count;
+    }
+
+    /**
+     * Estimates the number of times a word appeared for the given year range.
+     * @param word the word to be looked up.
+     * @param startYear the first year of the range of time desired.
+     * @param endYear the last year of the range of time desired.
+     * @return The estimate, at most getCountErrorBound too high.
+     */
+    @Override
+    public long getCountFor(String word, int startYear, int endYear)
+    {
+        long start = System.nanoTime();
+        long count = estimate(word.toLowerCase(), startYear, endYear);
+        stats.record(WordDataStats.Query.COUNT_RANGE, start);
+        return count;
+    }
+
+    /**
+     * Gets how much too high an estimated count for a year range can be. It is the same for every word.
+     * @param word the word that was looked up.
+     * @param startYear the first year of the range of time desired.
+     * @param endYear the last year of the range of time desired.
+     * @return The most the estimate can be too high, with the confidence given in the statistics.
+     */
+    @Override
+    public long getCountErrorBound(String word, int startYear, int endYear)
+    {
+        return errorBound(startYear, endYear);
+    }
+
+    /**
+     * Writes the load phase times, query latencies, memory use and the settings and error of the sketches.
+     * @param out where the statistics are written.
+     * @param json true for a single line of JSON, false for a report meant for people.
+     */
+    void writeStats(PrintWriter out, boolean json)
+    {
+        Map<String, Long> memory = new LinkedHashMap<>();
+        long sketchBytes = 0;
+        long heavyHitterBytes = 0;
+        long keptWords = 0;
+        for(Decade decade : decades.values())
+        {
+            sketchBytes += decade.sketch.estimateBytes();
+            heavyHitterBytes += decade.heavyHitters.estimateBytes();
+            keptWords += decade.heavyHitters.size();
+        }
+        memory.put("count-min sketches", sketchBytes);
+        memory.put("heavy hitters", heavyHitterBytes);
+
+        Map<String, Long> counters = new LinkedHashMap<>();
+        counters.put("lines read", linesRead);
+        counters.put("duplicate years", (long)duplicateYears);
+        counters.put("decades", (long)decades.size());
+        counters.put("sketch width", (long)sketchWidth);
+        counters.put("sketch depth", (long)SKETCH_DEPTH);
+        // The confidence is the same for every sketch, so it is the first one's
+        counters.put("sketch confidence (ppm)", decades.isEmpty() ? 0
+                : Math.round(decades.firstEntry().getValue().sketch.getConfidence() * 1e6));
+        counters.put("overall count error bound", errorBound(Integer.MIN_VALUE, Integer.MAX_VALUE));
+        counters.put("heavy hitters per decade", (long)heavyHitterCount);
+        counters.put("heavy hitters kept", keptWords);
+        counters.put("ranked words", (long)overallRanking.words.size());
+
+        if(json)
+            stats.writeJson(out, memory, counters);
+        else
+            stats.writeReport(out, memory, counters);
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * A CountMinSketch estimates how many times each of any number of keys was added in a fixed amount of memory. It is a
+ * grid of counters, depth rows of width counters each. A key is hashed to one counter in every row and added to all of
+ * them, and its estimate is the smallest of those counters. Other keys hashed to the same counters can only make a
+ * counter bigger, so an estimate is never too low.
+ * <br>
+ * With a width of w and a depth of d, an estimate is at most (e / w) * total too high with probability 1 - e^-d,
+ * where total is everything that was added to the sketch.
+ *
+ * @author Kevin Becker
+ */
+class CountMinSketch
+{
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+    private int depth;
+    private int width;
+    // Row r is counters[r * width] up to counters[(r + 1) * width]
+    private long[] counters;
+    private long total = 0;
+
+    /**
+     * Constructs a new, empty CountMinSketch.
+     * @param width the number of counters in a row, rounded up to a power of two.
+     * @param depth the number of rows.
+     */
+    CountMinSketch(int width, int depth)
+    {
+        if(width < 1 || depth < 1)
+            throw new IllegalArgumentException("A sketch needs at least one row and one column");
+        this.width = Integer.highestOneBit(width) == width ? width : Integer.highestOneBit(width) << 1;
+        this.depth = depth;
+        this.counters = new long[this.width * depth];
+    }
+
+    /**
+     * Adds to the count of a key.
+     * @param key the key, which should already be a good hash (see hash).
+     * @param count how much to add.
+     */
+    void add(long key, long count)
+    {
+        long mixed = mix(key);
+        int first = (int)mixed;
+        int step = (int)(mixed >>> 32) | 1;
+        for(int row = 0; row < depth; row++)
+            counters[row * width + ((first + row * step) & (width - 1))] += count;
+        total += count;
+    }
+
+    /**
+     * Estimates the count of a key.
+     * @param key the key.
+     * @return The estimated count, which is never less than the true count.
+     */
+    long estimate(long key)
+    {
+        long mixed = mix(key);
+        int first = (int)mixed;
+        int step = (int)(mixed >>> 32) | 1;
+        long smallest = Long.MAX_VALUE;
+        for(int row = 0; row < depth; row++)
+            smallest = Math.min(smallest, counters[row * width + ((first + row * step) & (width - 1))]);
+        return smallest;
+    }
+
+    /**
+     * Gets the most an estimate can be too high, with probability getConfidence.
+     * @return (e / width) * the total that was added, rounded up.
+     */
+    long getErrorBound()
+    {
+        return (long)Math.ceil(getEpsilon() * total);
+    }
+
+    /**
+     * @return The fraction of the total an estimate can be too high by.
+     */
+    double getEpsilon()
+    {
+        return Math.E / width;
+    }
+
+    /**
+     * @return The probability that an estimate is within the error bound.
+     */
+    double getConfidence()
+    {
+        return 1 - Math.exp(-depth);
+    }
+
+    /**
+     * @return Everything that was added to the sketch.
+     */
+    long getTotal()
+    {
+        return total;
+    }
+
+    /**
+     * Estimates the bytes the sketch holds on the heap.
+     * @return The estimated size in bytes.
+     */
+    long estimateBytes()
+    {
+        return WordDataStats.arrayBytes(counters.length, Long.BYTES);
+    }
+
+    /**
+     * Gets a 64 bit hash of a word. String.hashCode only has 32 bits, and with millions of words many of them would
+     * share one, which would be an error the bound doesn't cover.
+     * @param word the word.
+     * @return The hash of the word.
+     */
+    static long hash(String word)
+    {
+        long hash = 0xcbf29ce484222325L;
+        for(int index = 0; index < word.length(); index++)
+            hash = (hash ^ word.charAt(index)) * 0x100000001b3L;
+        return mix(hash);
+    }
+
+    /**
+     * Combines a hash with a number, such as a year, into a new key.
+     * @param hash the hash.
+     * @param value the number.
+     * @return The key for both of them.
+     */
+    static long combine(long hash, long value)
+    {
+        return hash + GOLDEN * (value + 1);
+    }
+
+    /**
+     * Spreads the bits of a key (the finalizer of SplitMix64).
+     */
+    private static long mix(long key)
+    {
+        key = (key ^ (key >>> 30)) * 0xbf58476d1ce4e5b9L;
+        key = (key ^ (key >>> 27)) * 0x94d049bb133111ebL;
+        return key ^ (key >>> 31);
+    }
+}
@@ -0,0 +1,112 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A LatencyHistogram counts how long something took, in nanoseconds, without keeping every time. Each power of two is
+ * split into four buckets, so a percentile read back from it is never off by more than a quarter. Recording is a few
+ * atomic adds, so any number of threads can record at once without locking.
+ *
+ * @author Kevin Becker
+ */
+class LatencyHistogram
+{
+    // Four buckets for each power of two a positive long can reach
+    private static final int BUCKETS = 62 * 4;
+
+    private AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private AtomicLong count = new AtomicLong();
+    private AtomicLong totalNanos = new AtomicLong();
+    private AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Records one time.
+     * @param nanos how long it took, in nanoseconds.
+     */
+    void record(long nanos)
+    {
+        nanos = Math.max(0, nanos);
+        buckets.incrementAndGet(bucketOf(nanos));
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * @return The number of times recorded.
+     */
+    long getCount()
+    {
+        return count.get();
+    }
+
+    /**
+     * @return The mean of the times recorded, or 0 if nothing has been.
+     */
+    double getMeanNanos()
+    {
+        long recorded = count.get();
+        return recorded == 0 ? 0 : (double)totalNanos.get() / recorded;
+    }
+
+    /**
+     * @return The longest time recorded.
+     */
+    long getMaxNanos()
+    {
+        return maxNanos.get();
+    }
+
+    /**
+     * Estimates a percentile of the times recorded.
+     * @param fraction the fraction of times that should be at or below the result, such as 0.99.
+     * @return The top of the bucket the percentile falls in (but never more than the longest time), or 0 if nothing
+     * has been recorded.
+     */
+    long getPercentileNanos(double fraction)
+    {
+        long recorded = 0;
+        long[] snapshot = new long[BUCKETS];
+        for(int bucket = 0; bucket < BUCKETS; bucket++)
+        {
+            snapshot[bucket] = buckets.get(bucket);
+            recorded += snapshot[bucket];
+        }
+        if(recorded == 0)
+            return 0;
+
+        long wanted = Math.max(1, (long)Math.ceil(fraction * recorded));
+        long seen = 0;
+        for(int bucket = 0; bucket < BUCKETS; bucket++)
+        {
+            seen += snapshot[bucket];
+            if(seen >= wanted)
+                return Math.min(lowestIn(bucket + 1) - 1, getMaxNanos());
+        }
+        return getMaxNanos();
+    }
+
+    /**
+     * Finds the bucket of a time. Times under 4 get a bucket each, after that the top three bits pick the bucket.
+     */
+    private static int bucketOf(long nanos)
+    {
+        if(nanos < 4)
+            return (int)nanos;
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int quarter = (int)(nanos >>> (exponent - 2)) & 3;
+        return (exponent - 1) * 4 + quarter;
+    }
+
+    /**
+     * Finds the lowest time that goes in a bucket.
+     */
+    private static long lowestIn(int bucket)
+    {
+        if(bucket < 4)
+            return bucket;
+        if(bucket >= BUCKETS)
+            return Long.MAX_VALUE;
+        int exponent = bucket / 4 + 1;
+        return (long)(4 | (bucket & 3)) << (exponent - 2);
+    }
+}
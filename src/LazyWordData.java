@@ -0,0 +1,746 @@
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A LazyWordData reads a 1-gram file once to find where each word's lines are, but doesn't keep the lines. A word's
+ * years and counts are read back from the file and parsed the first time the word is asked about, and a bounded cache
+ * keeps the most recently used words. Startup time and memory grow with the vocabulary and the words that are
+ * actually queried, instead of with the number of lines in the file.
+ * <br>
+ * The one pass also adds up each word's total, so overall ranks, the overall count of a word and totalWords never
+ * touch the file again. Anything that needs every word's count for some range of years (the rank of a word in a range,
+ * the top words of a range) needs another pass over the file. The rankings of ranges that are asked about more than
+ * once go in a RankCache so that they are only gone through once more.
+ * <br>
+ * A word's lines are usually one run in the file, but a word can show up in several places (in another case, or split
+ * over two blocks), so each word has a chain of segments. The same as a WordDataImpl, the first value in the file for a
+ * year is the one that is kept. The file must not change while it is being used.
+ *
+ * @author Kevin Becker
+ */
+class LazyWordData implements WordData, WordDataExporter.Source
+{
+    // The most lines of parsed words that are kept, unless a single word has more than this
+    static final int DEFAULT_MAX_CACHED_LINES = 1 << 20;
+    // There isn't a next segment
+    private static final int NO_SEGMENT = -1;
+
+    private Path path;
+    // The data file, open for as long as this is. Its reads all say where to read from, so threads can share it
+    private FileChannel channel;
+    private WordDictionary dictionary = new WordDictionary();
+
+    // Segment s is segmentLengths[s] bytes of the file starting at segmentPositions[s], nextSegment[s] is the word's
+    // next segment
+    private long[] segmentPositions = new long[1024];
+    private int[] segmentLengths = new int[1024];
+    private int[] nextSegment = new int[1024];
+    private int segmentCount = 0;
+    // firstSegment[id] is the first segment of the word with that id
+    private int[] firstSegment = new int[1024];
+    // lastSegment[id] is the last one, which is only needed while reading in the file
+    private int[] lastSegment = new int[1024];
+
+    private long[] totalById = new long[1024];
+    private int[] idsByOverallRank;
+    private int[] overallRankById;
+    private long totalWords = 0;
+    private int duplicateYears = 0;
+
+    // The words that were read back in, by id, in least recently used order
+    private LinkedHashMap<Integer, WordStore> parsedWords = new LinkedHashMap<>(16, 0.75f, true);
+    private int maxCachedLines;
+    private long cachedLines = 0;
+    private long cacheHits = 0;
+    private long cacheMisses = 0;
+    private long cacheEvictions = 0;
+
+    private RankCache rankCache;
+    private PrefixIndex prefixIndex;
+    private WordDataStats stats = new WordDataStats();
+
+    /**
+     * Reads the positions and totals of the words in a 1-gram file, keeping the default number of parsed lines.
+     * @param fileName the name of the 1-gram data file.
+     * @throws FileNotFoundException if the file cannot be opened.
+     */
+    LazyWordData(String fileName) throws FileNotFoundException
+    {
+        this(fileName, DEFAULT_MAX_CACHED_LINES);
+    }
+
+    /**
+     * Reads the positions and totals of the words in a 1-gram file.
+     * @param fileName the name of the 1-gram data file.
+     * @param maxCachedLines the most lines of parsed words to keep.
+     * @throws FileNotFoundException if the file cannot be opened.
+     * @throws IllegalArgumentException if the file is compressed.
+     */
+    LazyWordData(String fileName, int maxCachedLines) throws FileNotFoundException
+    {
+        this.path = Paths.get(fileName);
+        this.maxCachedLines = maxCachedLines;
+        if(NGramLoader.isCompressed(path))
+            throw new IllegalArgumentException(fileName + " is compressed, so its words can't be read back from it");
+        System.out.println("Reading in file \"" + fileName + "\"...");
+
+        // Only the blocks being parsed are ever held, each one is thrown away once its runs have been indexed
+        NGramLoader loader = new NGramLoader();
+        RunSummer summer = new RunSummer();
+        loader.scan(fileName, (chunk, blockStart) -> indexChunk(chunk, blockStart, summer));
+        stats.recordPhase("scan and index", loader.getSplitNanos() + loader.getParseNanos());
+        try
+        {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+
+        long phaseStart = System.nanoTime();
+        dictionary.trimToSize();
+        totalById = Arrays.copyOf(totalById, dictionary.size());
+        firstSegment = Arrays.copyOf(firstSegment, dictionary.size());
+        lastSegment = null;
+        segmentPositions = Arrays.copyOf(segmentPositions, segmentCount);
+        segmentLengths = Arrays.copyOf(segmentLengths, segmentCount);
+        nextSegment = Arrays.copyOf(nextSegment, segmentCount);
+        resolveSplitWords(summer);
+        stats.recordPhase("split words", System.nanoTime() - phaseStart);
+
+        if(duplicateYears > 0)
+            System.out.println(duplicateYears + " duplicate years were found, the first value is being used.");
+        System.out.printf("Finished reading in file. (%.1f MB at %.1f MB/s, %d words indexed)%n",
+                loader.getBytesRead() / (1024.0 * 1024.0), loader.getMegabytesPerSecond(), dictionary.size());
+
+        phaseStart = System.nanoTime();
+        idsByOverallRank = RankingEngine.orderByTotal(totalById);
+        overallRankById = RankingEngine.ranksFromOrder(idsByOverallRank);
+        stats.recordPhase("overall rank sort", System.nanoTime() - phaseStart);
+
+        rankCache = new RankCache((startYear, endYear) ->
+                RankingEngine.ranksFromOrder(RankingEngine.orderByTotal(rangeTotals(startYear, endYear))),
+                dictionary.size());
+
+        phaseStart = System.nanoTime();
+        prefixIndex = new PrefixIndex(dictionary.asList(), dictionary::idOf);
+        stats.recordPhase("prefix index", System.nanoTime() - phaseStart);
+    }
+
+    /**
+     * Checks if a file can be read lazily. Only a plain 1-gram file can be, the positions in a compressed file can't be
+     * read back without inflating everything before them, and a snapshot is better off mapped.
+     * @param fileName the name of the file.
+     * @return false if the file is a snapshot, compressed, a directory or a pattern for several files, true otherwise
+     *         (even if it isn't there).
+     */
+    static boolean canReadLazily(String fileName)
+    {
+        Path path = Paths.get(fileName);
+        if(Files.isDirectory(path) || NGramLoader.isPattern(fileName))
+            return false;
+        try
+        {
+            return !Files.isRegularFile(path) ||
+                    !(WordDataSnapshot.isSnapshot(fileName) || NGramLoader.isCompressed(path));
+        }
+        catch(FileNotFoundException e)
+        {
+            return true;
+        }
+    }
+
+    /**
+     * Records where every run of a block is and adds its lines to the totals.
+     * @param chunk the parsed block.
+     * @param blockStart where the block starts in the file.
+     * @param summer adds up the lines of a run.
+     */
+    private void indexChunk(ParsedChunk chunk, long blockStart, RunSummer summer)
+    {
+        for(int run = 0; run < chunk.getRunCount(); run++)
+        {
+            int wordsBefore = dictionary.size();
+            int id = dictionary.add(chunk.getRunWord(run));
+            if(id == firstSegment.length)
+            {
+                firstSegment = Arrays.copyOf(firstSegment, id * 2);
+                lastSegment = Arrays.copyOf(lastSegment, id * 2);
+                totalById = Arrays.copyOf(totalById, id * 2);
+            }
+            if(segmentCount == segmentPositions.length)
+            {
+                segmentPositions = Arrays.copyOf(segmentPositions, segmentCount * 2);
+                segmentLengths = Arrays.copyOf(segmentLengths, segmentCount * 2);
+                nextSegment = Arrays.copyOf(nextSegment, segmentCount * 2);
+            }
+
+            int segment = segmentCount++;
+            segmentPositions[segment] = blockStart + chunk.getRunPosition(run);
+            segmentLengths[segment] = chunk.getRunEndPosition(run) - chunk.getRunPosition(run);
+            nextSegment[segment] = NO_SEGMENT;
+            if(id == wordsBefore)
+                firstSegment[id] = segment;
+            else
+                nextSegment[lastSegment[id]] = segment;
+            lastSegment[id] = segment;
+
+            summer.sum(chunk, run, Integer.MIN_VALUE, Integer.MAX_VALUE);
+            totalById[id] += summer.total;
+            duplicateYears += summer.duplicates;
+        }
+
+        for(int line = 0; line < chunk.getLineCount(); line++)
+            totalWords += chunk.getCount(line);
+    }
+
+    /**
+     * A word in more than one segment can have the same year in two of them, which adding up each run on its own
+     * misses. The few words like that are read back in whole to get their totals right.
+     */
+    private void resolveSplitWords(RunSummer summer)
+    {
+        try
+        {
+            for(int id = 0; id < firstSegment.length; id++)
+            {
+                if(!isSplit(id))
+                    continue;
+
+                WordStore.Builder builder = new WordStore.Builder();
+                int runDuplicates = 0;
+                for(int segment = firstSegment[id]; segment != NO_SEGMENT; segment = nextSegment[segment])
+                {
+                    ParsedChunk chunk = readSegment(segment);
+                    builder.add(chunk);
+                    for(int run = 0; run < chunk.getRunCount(); run++)
+                    {
+                        summer.sum(chunk, run, Integer.MIN_VALUE, Integer.MAX_VALUE);
+                        runDuplicates += summer.duplicates;
+                    }
+                }
+
+                totalById[id] = builder.build().getCount(0);
+                duplicateYears += builder.getDuplicateYears() - runDuplicates;
+            }
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Checks if a word's lines are in more than one place in the file.
+     */
+    private boolean isSplit(int id)
+    {
+        return nextSegment[firstSegment[id]] != NO_SEGMENT;
+    }
+
+    /**
+     * Reads one segment back in from the file and parses it.
+     * @param segment the index of the segment.
+     * @return The parsed lines of the segment.
+     * @throws IOException if the segment cannot be read.
+     */
+    private ParsedChunk readSegment(int segment) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(segmentLengths[segment]);
+        long position = segmentPositions[segment];
+        while(buffer.hasRemaining())
+        {
+            if(channel.read(buffer, position + buffer.position()) < 0)
+                throw new IOException("The data file \"" + path + "\" got shorter after it was read in");
+        }
+        buffer.flip();
+        return ParsedChunk.parse(buffer);
+    }
+
+    /**
+     * Reads all of a word's lines back in, without caching them.
+     * @param id the id of the word.
+     * @return A WordStore of just that word, where it has the id 0.
+     */
+    private WordStore readWord(int id)
+    {
+        try
+        {
+            WordStore.Builder builder = new WordStore.Builder();
+            for(int segment = firstSegment[id]; segment != NO_SEGMENT; segment = nextSegment[segment])
+                builder.add(readSegment(segment));
+            return builder.build();
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Gets the lines of a word from the cache, reading them in if they aren't there. The least recently used words are
+     * thrown out to make room.
+     * @param id the id of the word.
+     * @return A WordStore of just that word, where it has the id 0.
+     */
+    private WordStore parsedWord(int id)
+    {
+        synchronized(parsedWords)
+        {
+            WordStore word = parsedWords.get(id);
+            if(word != null)
+            {
+                cacheHits++;
+                return word;
+            }
+            cacheMisses++;
+        }
+
+        // The file is read outside of the lock, two threads missing on the same word just both read it
+        WordStore word = readWord(id);
+        synchronized(parsedWords)
+        {
+            if(parsedWords.putIfAbsent(id, word) == null)
+            {
+                cachedLines += word.lineCount();
+                Iterator<WordStore> eldest = parsedWords.values().iterator();
+                while(cachedLines > maxCachedLines && parsedWords.size() > 1)
+                {
+                    cachedLines -= eldest.next().lineCount();
+                    eldest.remove();
+                    cacheEvictions++;
+                }
+            }
+        }
+        return word;
+    }
+
+    /**
+     * Gets the count of a word for a range of years. The overall total is already known, anything else reads the word.
+     */
+    private long countOf(int id, int startYear, int endYear)
+    {
+        if(startYear == Integer.MIN_VALUE && endYear == Integer.MAX_VALUE)
+            return totalById[id];
+        return parsedWord(id).getCount(0, startYear, endYear);
+    }
+
+    /**
+     * Adds up the count of every word for a range of years with one pass over the file. Words in more than one place
+     * are read on their own so their duplicate years are dropped properly.
+     * @param startYear the first year of the range of time desired.
+     * @param endYear the last year of the range of time desired.
+     * @return The count of each word id in the range.
+     */
+    private long[] rangeTotals(int startYear, int endYear)
+    {
+        if(startYear == Integer.MIN_VALUE && endYear == Integer.MAX_VALUE)
+            return totalById.clone();
+
+        long[] totals = new long[dictionary.size()];
+        RunSummer summer = new RunSummer();
+        try
+        {
+            new NGramLoader().scan(path.toString(), (chunk, blockStart) -> {
+                for(int run = 0; run < chunk.getRunCount(); run++)
+                {
+                    int id = dictionary.idOf(chunk.getRunWord(run));
+                    if(!isSplit(id))
+                    {
+                        summer.sum(chunk, run, startYear, endYear);
+                        totals[id] += summer.total;
+                    }
+                }
+            });
+        }
+        catch(FileNotFoundException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+
+        // These aren't cached, so ranking a range doesn't push the words being worked with out of the cache
+        for(int id = 0; id < totals.length; id++)
+        {
+            if(isSplit(id))
+                totals[id] = readWord(id).getCount(0, startYear, endYear);
+        }
+        return totals;
+    }
+
+    /**
+     * Looks up the id of a word, ignoring its case.
+     * @param word the word to be looked up.
+     * @return The id of the word, or -1 if it wasn't read in.
+     */
+    private int idOf(String word)
+    {
+        return dictionary.idOf(word.toLowerCase());
+    }
+
+    /**
+     * The dump data dumps all of the data in the file to the console. Every word is read back in, but none of them
+     * are cached.
+     */
+    @Override
+    public void dumpData()
+    {
+        WordDataExporter.dump(this);
+    }
+
+    /**
+     * Writes every word to an exporter, reading each one back in without caching it.
+     * @param exporter where the words are written.
+     * @param order the order the words are written in.
+     * @throws IOException if the words cannot be read or written.
+     */
+    @Override
+    public void export(WordDataExporter exporter, WordDataExporter.Order order) throws IOException
+    {
+        int[] ids = order == WordDataExporter.Order.RANK ? idsByOverallRank
+                : order == WordDataExporter.Order.WORD ? prefixIndex.idsWithPrefix("") : null;
+        for(int index = 0; index < dictionary.size(); index++)
+            exporter.write(readWord(ids == null ? index : ids[index]), 0);
+    }
+
+    /**
+     * Collects all of the words, in the order they were read in.
+     * @return A read only view of every word.
+     */
+    @Override
+    public Collection<String> words()
+    {
+        return dictionary.asList();
+    }
+
+    /**
+     * Gives the total number of occurrences of every line in the file.
+     * @return A long of the number of words that were read in.
+     */
+    @Override
+    public long totalWords()
+    {
+        return totalWords;
+    }
+
+    /**
+     * Gets the rank of a word for the entire data set, which was worked out from the totals when the file was read.
+     * @param word the word to be looked up.
+     * @return An int representing the rank of the word for the entire data set.
+     */
+    @Override
+    public int getRankFor(String word)
+    {
+        long start = System.nanoTime();
+        int id = idOf(word);
+        int rank = id < 0 ? UNRANKED : overallRankById[id];
+        stats.record(WordDataStats.Query.RANK, start);
+        return rank;
+    }
+
+    /**
+     * Computes the rank of a word for a given year period. The first time a range is asked about every word is
+     * counted with a pass over the file, and the second time it is also ranked and cached, after that it is an array
+     * lookup.
+     * @param word the word to be looked up.
+     * @param startYear the first year of the range of time desired.
+     * @param endYear the last year of the range of time desired.
+     * @return An int representing the rank of the word in the range.
+     */
+    @Override
+    public int getRankFor(String word, int startYear, int endYear)
+    {
+        long start = System.nanoTime();
+        int rank = rankInRange(word, startYear, endYear);
+        stats.record(WordDataStats.Query.RANK_RANGE, start);
+        return rank;
+    }
+
+    /**
+     * Computes the rank of a word for a given single year. This is only here so that it is timed separately from
+     * ranges of years.
+     * @param word the word to be looked up.
+     * @param year the year to be considered.
+     * @return An int representing the rank of the word in the year.
+     */
+    @Override
+    public int getRankFor(String word, int year)
+    {
+        long start = System.nanoTime();
+        int rank = rankInRange(word, year, year);
+        stats.record(WordDataStats.Query.RANK_YEAR, start);
+        return rank;
+    }
+
+    /**
+     * Computes the rank of a word for a given year period, without timing it.
+     */
+    private int rankInRange(String word, int startYear, int endYear)
+    {
+        int id = idOf(word);
+        long count = id < 0 ? 0 : countOf(id, startYear, endYear);
+        if(count == 0)
+            return UNRANKED;
+
+        // The same as WordDataImpl, the first question about a range is answered without sorting every word. The
+        // file still has to be scanned to count the words, but only the words that beat this one are counted
+        int[] ranks = rankCache.repeatedRanksFor(startYear, endYear);
+        if(ranks != null)
+            return ranks[id];
+        long[] totals = rangeTotals(startYear, endYear);
+        int rank = 1;
+        for(int other = 0; other < totals.length; other++)
+        {
+            if(RankingEngine.beats(totals[other], other, count, id))
+                rank++;
+        }
+        return rank;
+    }
+
+    /**
+     * Gets the total count of every word in overall rank order.
+     * @return A long array where index r holds the count of the word ranked r + 1.
+     */
+    @Override
+    public long[] getRankedCounts()
+    {
+        long[] ranking = new long[idsByOverallRank.length];
+        for(int rank = 0; rank < ranking.length; rank++)
+            ranking[rank] = totalById[idsByOverallRank[rank]];
+        return ranking;
+    }
+
+    /**
+     * Gets the count of every word used in a given year period, highest first, with one pass over the file.
+     * @param startYear the first year of the range of time desired.
+     * @param endYear the last year of the range of time desired.
+     * @return A long array where index r holds the count of the word ranked r + 1 in the range.
+     */
+    @Override
+    public long[] getRankedCounts(int startYear, int endYear)
+    {
+        long[] totals = rangeTotals(startYear, endYear);
+        int used = 0;
+        for(long total : totals)
+        {
+            if(total != 0)
+                totals[used++] = total;
+        }
+
+        return RankingEngine.sortHighestFirst(Arrays.copyOf(totals, used));
+    }
+
+    /**
+     * Gets the most common words over the entire data set, from the overall ranks.
+     * @param k how many words are wanted.
+     * @return A List of up to k words, most common first.
+     */
+    @Override
+    public List<String> topWords(int k)
+    {
+        return RankingEngine.topOfOrder(idsByOverallRank, k, id -> totalById[id], dictionary::wordOf);
+    }
+
+    /**
+     * Gets the most common words for a given year period from the cached ranking of the range, so only the top k words
+     * are read in.
+     * @param k how many words are wanted.
+     * @param startYear the first year of the range of time desired.
+     * @param endYear the last year of the range of time desired.
+     * @return A List of up to k words, most common first.
+     */
+    @Override
+    public List<String> topWords(int k, int startYear, int endYear)
+    {
+        List<String> top = new ArrayList<>();
+        int wanted = Math.max(0, Math.min(k, dictionary.size()));
+        if(wanted == 0)
+            return top;
+
+        int[] ranks = rankCache.ranksFor(startYear, endYear);
+        int[] idsByRank = new int[wanted];
+        for(int id = 0; id < ranks.length; id++)
+        {
+            if(ranks[id] <= wanted)
+                idsByRank[ranks[id] - 1] = id;
+        }
+
+        // Words with no occurrences are ranked after every other word, so the first one ends the list
+        for(int id : idsByRank)
+        {
+            if(countOf(id, startYear, endYear) == 0)
+                break;
+            top.add(dictionary.wordOf(id));
+        }
+        return top;
+    }
+
+    /**
+     * Finds the words whose rank changed the most between two year periods. Each period is counted with one pass over
+     * the file and ranked once, then the two rankings are compared in parallel.
+     * @param aStart the first year of the first period.
+     * @param aEnd the last year of the first period.
+     * @param bStart the first year of the second period.
+     * @param bEnd the last year of the second period.
+     * @param k how many words are wanted in each direction.
+     * @return Up to k words that went up the most and up to k that went down the most.
+     */
+    @Override
+    public RankDelta rankDelta(int aStart, int aEnd, int bStart, int bEnd, int k)
+    {
+        return RankDelta.between(RankingEngine.ranksOfUsed(rangeTotals(aStart, aEnd)),
+                RankingEngine.ranksOfUsed(rangeTotals(bStart, bEnd)), k, dictionary::wordOf);
+    }
+
+    /**
+     * Gets the number of times a word appeared for the entire data set, without reading the word in.
+     * @param word the word to be looked up.
+     * @return The total number of occurrences of the word.
+     */
+    @Override
+    public long getCountFor(String word)
+    {
+        long start = System.nanoTime();
+        int id = idOf(word);
+        long count = id < 0 ? 0 : totalById[id];
+        stats.record(WordDataStats.Query.COUNT, start);
+        return count;
+    }
+
+    /**
+     * Gets the count of a word for a given single year, reading the word in if it isn't cached.
+     * @param word the word to be looked up.
+     * @param year the year to be considered.
+     * @return The number of occurrences of the word in the year.
+     */
+    @Override
+    public long getCountFor(String word, int year)
+    {
+        long start = System.nanoTime();
+        int id = idOf(word);
+        long count = id < 0 ? 0 : parsedWord(id).getCount(0, year);
+        stats.record(WordDataStats.Query.COUNT_YEAR, start);
+        return count;
+    }
+
+    /**
+     * Gets the number of times a word appeared for the given year range, reading the word in if it isn't cached.
+     * @param word the word to be looked up.
+     * @param startYear the first year of the range of time desired.
+     * @param endYear the last year of the range of time desired.
+     * @return The number of occurrences of the word in the range.
+     */
+    @Override
+    public long getCountFor(String word, int startYear, int endYear)
+    {
+        long start = System.nanoTime();
+        int id = idOf(word);
+        long count = id < 0 ? 0 : countOf(id, startYear, endYear);
+        stats.record(WordDataStats.Query.COUNT_RANGE, start);
+        return count;
+    }
+
+    /**
+     * Gets the count of a word in every year of a range, reading the word in if it isn't cached.
+     * @param word the word to be looked up.
+     * @param startYear the first year of the range of time desired.
+     * @param endYear the last year of the range of time desired.
+     * @param out gets the count of year y at out[y - startYear].
+     */
+    @Override
+    public void getSeries(String word, int startYear, int endYear, long[] out)
+    {
+        int years = WordData.seriesLength(startYear, endYear, 1, out);
+        int id = idOf(word);
+        if(id < 0)
+            Arrays.fill(out, 0, years, 0);
+        else
+            parsedWord(id).fillSeries(0, startYear, endYear, out, 0);
+    }
+
+    /**
+     * Gets every word that starts with some letters from the prefix index, so only the words that match are looked at.
+     * @param prefix the letters the words start with, in any case.
+     * @return The words that start with prefix, in alphabetical order.
+     */
+    @Override
+    public List<String> wordsWithPrefix(String prefix)
+    {
+        List<String> matches = new ArrayList<>();
+        for(int id : prefixIndex.idsWithPrefix(prefix.toLowerCase()))
+            matches.add(dictionary.wordOf(id));
+        return matches;
+    }
+
+    /**
+     * Gets the number of times all of the words starting with some letters appeared for the given year range. Only
+     * the words that match are read in, and not even those for the entire data set.
+     * @param prefix the letters the words start with, in any case.
+     * @param startYear the first year of the range of time desired.
+     * @param endYear the last year of the range of time desired.
+     * @return The total number of occurrences of the words in the range.
+     */
+    @Override
+    public long getPrefixCount(String prefix, int startYear, int endYear)
+    {
+        long total = 0;
+        for(int id : prefixIndex.idsWithPrefix(prefix.toLowerCase()))
+            total += countOf(id, startYear, endYear);
+        return total;
+    }
+
+    /**
+     * Writes the load phase times, query latencies, estimated memory use and cache counters.
+     * @param out where the statistics are written.
+     * @param json true for a single line of JSON, false for a report meant for people.
+     */
+    void writeStats(PrintWriter out, boolean json)
+    {
+        Map<String, Long> memory = new LinkedHashMap<>();
+        memory.put("word dictionary", dictionary.estimateBytes());
+        memory.put("segment index", WordDataStats.arrayBytes(segmentCount, Long.BYTES)
+                + 2 * WordDataStats.arrayBytes(segmentCount, Integer.BYTES)
+                + WordDataStats.arrayBytes(firstSegment.length, Integer.BYTES));
+        memory.put("totals and overall ranks", WordDataStats.arrayBytes(totalById.length, Long.BYTES)
+                + 2 * WordDataStats.arrayBytes(overallRankById.length, Integer.BYTES));
+        memory.put("prefix index", prefixIndex.estimateBytes());
+        Map<String, Long> counters = new LinkedHashMap<>();
+        synchronized(parsedWords)
+        {
+            // Years, counts and prefix sums for every line
+            memory.put("parsed words", cachedLines * (Integer.BYTES + 2 * Long.BYTES));
+            counters.put("words", (long)dictionary.size());
+            counters.put("segments", (long)segmentCount);
+            counters.put("parsed words cached", (long)parsedWords.size());
+            counters.put("parsed lines cached", cachedLines);
+            counters.put("parsed lines capacity", (long)maxCachedLines);
+            counters.put("parsed word hits", cacheHits);
+            counters.put("parsed word misses", cacheMisses);
+            counters.put("parsed word evictions", cacheEvictions);
+        }
+        memory.put("rank cache", rankCache.size() * rankCache.getBytesPerEntry());
+        counters.put("rank cache entries", (long)rankCache.size());
+        counters.put("rank cache hits", rankCache.getHits());
+        counters.put("rank cache misses", rankCache.getMisses());
+
+        if(json)
+            stats.writeJson(out, memory, counters);
+        else
+            stats.writeReport(out, memory, counters);
+    }
+}
@@ -0,0 +1,622 @@
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.ObjLongConsumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The NGramLoader reads a 1-gram data file by memory mapping it, splitting it into blocks that start and end on line
+ * boundaries and parsing each block on its own thread. The parsed blocks are returned in the order they appear in the
+ * file so that whoever merges them sees the lines in the same order a sequential reader would.
+ * <br>
+ * A gzip compressed file (the way the Google shards come) can't be mapped, so it is read as a pipeline instead: one
+ * thread inflates the file into large blocks that end on line boundaries and the other threads parse them as they come.
+ * Only a few blocks can be waiting to be parsed at once, so if the parsers fall behind the inflating waits for them.
+ *
+ * @author Kevin Becker
+ */
+class NGramLoader
+{
+    // Blocks are never bigger than this so each one can be mapped on its own (a mapping is limited to 2GB)
+    private static final long MAX_CHUNK_SIZE = 64L * 1024 * 1024;
+    // Files smaller than this aren't worth splitting up
+    private static final long MIN_CHUNK_SIZE = 1024L * 1024;
+    // How far to read at a time when looking for the end of a line
+    private static final int BOUNDARY_SCAN_SIZE = 8192;
+    // The size of the blocks a compressed file is inflated into
+    private static final int INFLATED_BLOCK_SIZE = 8 * 1024 * 1024;
+    // How many inflated blocks can be waiting for each thread
+    private static final int BLOCKS_PER_THREAD = 2;
+    // The first two bytes of every gzip file
+    private static final int GZIP_MAGIC = 0x1f8b;
+
+    private long bytesRead = 0;
+    private long nanosTaken = 0;
+    private long splitNanos = 0;
+    private long parseNanos = 0;
+
+    /**
+     * Parses a 1-gram data file.
+     * @param fileName the name of the 1-gram data file.
+     * @return The parsed blocks of the file, in file order.
+     * @throws FileNotFoundException if the file cannot be opened.
+     */
+    List<ParsedChunk> load(String fileName) throws FileNotFoundException
+    {
+        return load(readablePath(fileName), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Parses several 1-gram data files at the same time and puts their blocks together. The blocks come back in the
+     * order of the files and then in file order, so merging them keeps the first value of a duplicate year from the
+     * earliest file, just like one file made by putting them all together. Since the files are read side by side, it
+     * takes about as long as the biggest file does on its share of the threads.
+     * @param fileNames the names of the 1-gram data files (see expand for directories and patterns).
+     * @return The parsed blocks of every file.
+     * @throws FileNotFoundException if any of the files cannot be opened.
+     */
+    List<ParsedChunk> load(List<String> fileNames) throws FileNotFoundException
+    {
+        if(fileNames.size() == 1)
+            return load(fileNames.get(0));
+
+        List<Path> paths = new ArrayList<>();
+        for(String fileName : fileNames)
+            paths.add(readablePath(fileName));
+
+        long startTime = System.nanoTime();
+        int threads = Runtime.getRuntime().availableProcessors();
+        // Every file gets its own loader with its share of the threads, and the files are loaded side by side
+        int threadsPerFile = Math.max(1, threads / paths.size());
+        List<NGramLoader> loaders = new ArrayList<>();
+        List<Callable<List<ParsedChunk>>> tasks = new ArrayList<>();
+        for(Path path : paths)
+        {
+            NGramLoader loader = new NGramLoader();
+            loaders.add(loader);
+            tasks.add(() -> loader.load(path, threadsPerFile));
+        }
+
+        List<ParsedChunk> chunks = new ArrayList<>();
+        for(List<ParsedChunk> fileChunks : runAll(tasks, threads))
+            chunks.addAll(fileChunks);
+
+        bytesRead = 0;
+        splitNanos = 0;
+        for(NGramLoader loader : loaders)
+        {
+            bytesRead += loader.bytesRead;
+            splitNanos = Math.max(splitNanos, loader.splitNanos);
+        }
+        nanosTaken = System.nanoTime() - startTime;
+        parseNanos = nanosTaken - splitNanos;
+        return chunks;
+    }
+
+    /**
+     * Turns names into the list of files they stand for. A directory stands for every file in it that isn't hidden,
+     * and a name with a * ? [ or { in its last part is a pattern for files in its directory (such as
+     * data/1gram-*.csv.gz). Anything else is just a file. The files of a directory or pattern are in name order, so
+     * the same names always load the same way.
+     * @param names the names of files, directories or patterns.
+     * @return The names of the files.
+     * @throws FileNotFoundException if a directory or pattern has no files.
+     */
+    static List<String> expand(List<String> names) throws FileNotFoundException
+    {
+        List<String> fileNames = new ArrayList<>();
+        for(String name : names)
+        {
+            Path path = Paths.get(name);
+            Path directory;
+            PathMatcher matcher;
+            if(Files.isDirectory(path))
+            {
+                directory = path;
+                matcher = file -> true;
+            }
+            else if(isPattern(name))
+            {
+                directory = path.getParent() == null ? Paths.get(".") : path.getParent();
+                matcher = directory.getFileSystem().getPathMatcher("glob:" + path.getFileName());
+            }
+            else
+            {
+                fileNames.add(name);
+                continue;
+            }
+
+            List<String> matches = new ArrayList<>();
+            try(DirectoryStream<Path> files = Files.newDirectoryStream(directory))
+            {
+                for(Path file : files)
+                {
+                    if(Files.isRegularFile(file) && !file.getFileName().toString().startsWith(".")
+                            && matcher.matches(file.getFileName()))
+                        matches.add(file.toString());
+                }
+            }
+            catch(IOException e)
+            {
+                throw new FileNotFoundException(name + " (" + e.getMessage() + ")");
+            }
+
+            if(matches.isEmpty())
+                throw new FileNotFoundException(name + " (No files were found)");
+            Collections.sort(matches);
+            fileNames.addAll(matches);
+        }
+        return fileNames;
+    }
+
+    /**
+     * Checks if a name is a pattern for several files rather than the name of one.
+     * @param name the name.
+     * @return true if the last part of the name has a * ? [ or {, false otherwise.
+     */
+    static boolean isPattern(String name)
+    {
+        Path fileName = Paths.get(name).getFileName();
+        return fileName != null && fileName.toString().matches(".*[*?\\[{].*");
+    }
+
+    /**
+     * Parses a 1-gram data file that is already known to be readable.
+     * @param path the 1-gram data file.
+     * @param threads the number of threads to parse on.
+     * @return The parsed blocks of the file, in file order.
+     * @throws FileNotFoundException if the file cannot be opened.
+     */
+    private List<ParsedChunk> load(Path path, int threads) throws FileNotFoundException
+    {
+        long startTime = System.nanoTime();
+
+        if(isCompressed(path))
+            return loadCompressed(path, threads, startTime);
+
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            long size = channel.size();
+            List<Long> boundaries = findChunkBoundaries(channel, size, threads);
+
+            List<Callable<ParsedChunk>> tasks = new ArrayList<>();
+            for(int index = 0; index + 1 < boundaries.size(); index++)
+            {
+                long start = boundaries.get(index);
+                long end = boundaries.get(index + 1);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                tasks.add(() -> ParsedChunk.parse(buffer));
+            }
+            long parseStartTime = System.nanoTime();
+
+            // The file is read as it is parsed (by page faults on the mapped blocks), so reading and parsing can't be
+            // timed apart
+            List<ParsedChunk> chunks = runAll(tasks, threads);
+
+            bytesRead = size;
+            long endTime = System.nanoTime();
+            nanosTaken = endTime - startTime;
+            splitNanos = parseStartTime - startTime;
+            parseNanos = endTime - parseStartTime;
+            return chunks;
+        }
+        catch(FileNotFoundException e)
+        {
+            throw e;
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Inflates a gzip compressed 1-gram file and keeps every parsed block.
+     * @param path the compressed file.
+     * @param threads the number of threads to parse on.
+     * @param startTime when loading started.
+     * @return The parsed blocks of the file, in file order.
+     */
+    private List<ParsedChunk> loadCompressed(Path path, int threads, long startTime)
+    {
+        List<ParsedChunk> chunks = new ArrayList<>();
+        inflate(path, threads, startTime, (chunk, blockStart) -> chunks.add(chunk));
+        return chunks;
+    }
+
+    /**
+     * Inflates a gzip compressed 1-gram file on this thread while the blocks it has already inflated are parsed on
+     * a pool of threads, handing the parsed blocks to a visitor in file order.
+     * @param path the compressed file.
+     * @param threads the number of threads to parse on.
+     * @param startTime when loading started.
+     * @param visitor gets each parsed block along with where the block starts in the inflated data.
+     */
+    private void inflate(Path path, int threads, long startTime, ObjLongConsumer<ParsedChunk> visitor)
+    {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        // The blocks that are being parsed or are waiting for the visitor, oldest first
+        Deque<Future<ParsedChunk>> parsing = new ArrayDeque<>();
+        long inflated = 0;
+        long delivered = 0;
+
+        try(InputStream in = new GZIPInputStream(Files.newInputStream(path), 64 * 1024))
+        {
+            byte[] block = new byte[INFLATED_BLOCK_SIZE];
+            int length = 0;
+            boolean finished = false;
+            while(!finished)
+            {
+                // Fills up the block after whatever was left over from the last one
+                int read = 0;
+                while(length < block.length && (read = in.read(block, length, block.length - length)) >= 0)
+                    length += read;
+                finished = read < 0;
+
+                // The block is cut after its last new line and the partial line is moved to the next block
+                int end = finished ? length : lineStartBefore(block, length);
+                if(end == 0 && !finished)
+                {
+                    // A line longer than a whole block, so the block has to get bigger
+                    block = Arrays.copyOf(block, block.length * 2);
+                    continue;
+                }
+
+                byte[] next = new byte[Math.max(INFLATED_BLOCK_SIZE, length - end)];
+                System.arraycopy(block, end, next, 0, length - end);
+                if(end > 0)
+                {
+                    // The queue of blocks being parsed is what bounds memory (there is no semaphore): once
+                    // threads * BLOCKS_PER_THREAD blocks are queued, this waits for the oldest one and delivers it
+                    while(parsing.size() >= threads * BLOCKS_PER_THREAD)
+                        delivered += deliver(parsing.remove().get(), delivered, visitor);
+
+                    ByteBuffer buffer = ByteBuffer.wrap(block, 0, end);
+                    parsing.add(pool.submit(() -> ParsedChunk.parse(buffer)));
+                    inflated += end;
+                }
+                block = next;
+                length -= end;
+            }
+
+            while(!parsing.isEmpty())
+                delivered += deliver(parsing.remove().get(), delivered, visitor);
+
+            // Inflating and parsing overlap, so they can't be timed apart
+            bytesRead = inflated;
+            nanosTaken = System.nanoTime() - startTime;
+            splitNanos = 0;
+            parseNanos = nanosTaken;
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading the data file", e);
+        }
+        catch(ExecutionException e)
+        {
+            rethrow(e.getCause());
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Hands a parsed block to a visitor.
+     * @return The number of bytes in the block.
+     */
+    private static long deliver(ParsedChunk chunk, long blockStart, ObjLongConsumer<ParsedChunk> visitor)
+    {
+        visitor.accept(chunk, blockStart);
+        return chunk.getByteLength();
+    }
+
+    /**
+     * Finds where the last whole line of a block ends.
+     * @param block the bytes of the block.
+     * @param length the number of bytes in the block.
+     * @return The index after the last new line character, or 0 if there isn't one.
+     */
+    private static int lineStartBefore(byte[] block, int length)
+    {
+        int index = length;
+        while(index > 0 && block[index - 1] != '\n')
+            index--;
+        return index;
+    }
+
+    /**
+     * Checks if a file is gzip compressed by looking at its first two bytes.
+     * @param path the file.
+     * @return true if the file starts like a gzip file, false otherwise.
+     * @throws FileNotFoundException if the file cannot be read.
+     */
+    static boolean isCompressed(Path path) throws FileNotFoundException
+    {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            ByteBuffer magic = ByteBuffer.allocate(2);
+            while(magic.hasRemaining() && channel.read(magic) > 0);
+            return !magic.hasRemaining() && (magic.getShort(0) & 0xffff) == GZIP_MAGIC;
+        }
+        catch(IOException e)
+        {
+            throw new FileNotFoundException(path + " (" + e.getMessage() + ")");
+        }
+    }
+
+    /**
+     * Parses a 1-gram data file one block at a time, handing each block to a visitor in file order and then letting go
+     * of it, so only a few blocks are ever held at once no matter how big the file is. While the visitor works on one
+     * block the next few are being parsed on the other threads.
+     * @param fileName the name of the 1-gram data file.
+     * @param visitor gets each parsed block along with where the block starts in the file. The positions in the block
+     *                (see ParsedChunk.getRunPosition) are from that start. For a compressed file they are positions in
+     *                the inflated data, which can't be read back from the file.
+     * @throws FileNotFoundException if the file cannot be opened.
+     */
+    void scan(String fileName, ObjLongConsumer<ParsedChunk> visitor) throws FileNotFoundException
+    {
+        Path path = readablePath(fileName);
+        long startTime = System.nanoTime();
+        int threads = Runtime.getRuntime().availableProcessors();
+        if(isCompressed(path))
+        {
+            inflate(path, threads, startTime, visitor);
+            return;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            long size = channel.size();
+            List<Long> boundaries = findChunkBoundaries(channel, size, threads);
+            long parseStartTime = System.nanoTime();
+
+            // At most one block per thread is parsed ahead of the visitor
+            Deque<Future<ParsedChunk>> parsing = new ArrayDeque<>();
+            int next = 0;
+            for(int index = 0; index + 1 < boundaries.size(); index++)
+            {
+                while(next + 1 < boundaries.size() && parsing.size() <= threads)
+                {
+                    long start = boundaries.get(next);
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                            boundaries.get(next + 1) - start);
+                    parsing.add(pool.submit(() -> ParsedChunk.parse(buffer)));
+                    next++;
+                }
+                visitor.accept(parsing.remove().get(), boundaries.get(index));
+            }
+
+            bytesRead = size;
+            long endTime = System.nanoTime();
+            nanosTaken = endTime - startTime;
+            splitNanos = parseStartTime - startTime;
+            parseNanos = endTime - parseStartTime;
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading the data file", e);
+        }
+        catch(ExecutionException e)
+        {
+            rethrow(e.getCause());
+        }
+        catch(FileNotFoundException e)
+        {
+            throw e;
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Checks that a file can be read.
+     * @param fileName the name of the file.
+     * @return The path of the file.
+     * @throws FileNotFoundException if the file isn't there or cannot be read.
+     */
+    private static Path readablePath(String fileName) throws FileNotFoundException
+    {
+        Path path = Paths.get(fileName);
+        if(!Files.isRegularFile(path) || !Files.isReadable(path))
+            throw new FileNotFoundException(fileName + " (No such file or it cannot be read)");
+        return path;
+    }
+
+    /**
+     * Runs every task on a pool of worker threads and collects the results in the order of the tasks.
+     * @param tasks the tasks to be run.
+     * @param threads the most threads that should be used.
+     * @return The results of the tasks, in the same order as the tasks.
+     */
+    static <T> List<T> runAll(List<Callable<T>> tasks, int threads)
+    {
+        List<T> results = new ArrayList<>(tasks.size());
+
+        // There's no reason to start a pool for a single task
+        if(tasks.size() == 1)
+        {
+            results.add(call(tasks.get(0)));
+            return results;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, tasks.size())));
+        try
+        {
+            for(Future<T> future : pool.invokeAll(tasks))
+                results.add(future.get());
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading the data file", e);
+        }
+        catch(ExecutionException e)
+        {
+            rethrow(e.getCause());
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+
+        return results;
+    }
+
+    /**
+     * Splits the file into blocks, moving each split forward to just after the next new line character.
+     * @param channel the channel of the file.
+     * @param size the size of the file in bytes.
+     * @param threads the number of threads that will be parsing.
+     * @return The start of every block followed by the size of the file.
+     * @throws IOException if the file cannot be read.
+     */
+    private List<Long> findChunkBoundaries(FileChannel channel, long size, int threads) throws IOException
+    {
+        long chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, size / threads + 1));
+        ByteBuffer scan = ByteBuffer.allocate(BOUNDARY_SCAN_SIZE);
+
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+
+        long position = chunkSize;
+        while(position < size)
+        {
+            long lineEnd = findNextLineStart(channel, position, size, scan);
+            if(lineEnd >= size)
+                break;
+
+            boundaries.add(lineEnd);
+            position = lineEnd + chunkSize;
+        }
+
+        boundaries.add(size);
+        return boundaries;
+    }
+
+    /**
+     * Finds the first byte after the next new line character.
+     * @param channel the channel of the file.
+     * @param position where to start looking.
+     * @param size the size of the file in bytes.
+     * @param scan a buffer to read into.
+     * @return The index of the start of the next line, or the size of the file if there isn't one.
+     * @throws IOException if the file cannot be read.
+     */
+    private static long findNextLineStart(FileChannel channel, long position, long size, ByteBuffer scan)
+            throws IOException
+    {
+        while(position < size)
+        {
+            scan.clear();
+            int read = channel.read(scan, position);
+            if(read <= 0)
+                break;
+
+            for(int index = 0; index < read; index++)
+            {
+                if(scan.get(index) == '\n')
+                    return position + index + 1;
+            }
+            position += read;
+        }
+
+        return size;
+    }
+
+    private static <T> T call(Callable<T> task)
+    {
+        try
+        {
+            return task.call();
+        }
+        catch(Exception e)
+        {
+            rethrow(e);
+            return null;
+        }
+    }
+
+    private static void rethrow(Throwable cause)
+    {
+        if(cause instanceof RuntimeException)
+            throw (RuntimeException)cause;
+        if(cause instanceof Error)
+            throw (Error)cause;
+        if(cause instanceof IOException)
+            throw new UncheckedIOException((IOException)cause);
+        throw new IllegalStateException(cause);
+    }
+
+    /**
+     * Gets how fast the last file was read in.
+     * @return The number of megabytes read per second.
+     */
+    double getMegabytesPerSecond()
+    {
+        return nanosTaken == 0 ? 0 : (bytesRead / (1024.0 * 1024.0)) / (nanosTaken / 1e9);
+    }
+
+    /**
+     * Gets the size of the last file that was read in.
+     * @return The number of bytes read.
+     */
+    long getBytesRead()
+    {
+        return bytesRead;
+    }
+
+    /**
+     * Gets how long it took to split the file into blocks and map them.
+     * @return The time in nanoseconds.
+     */
+    long getSplitNanos()
+    {
+        return splitNanos;
+    }
+
+    /**
+     * Gets how long it took to read and parse every block.
+     * @return The time in nanoseconds.
+     */
+    long getParseNanos()
+    {
+        return parseNanos;
+    }
+}
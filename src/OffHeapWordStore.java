@@ -0,0 +1,154 @@
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An OffHeapWordStore is a WordStore whose year, count and prefix sum columns stay in a snapshot file and are memory
+ * mapped, rather than being copied into arrays on the heap. Those columns are almost all of the data, so the heap only
+ * has to hold the words and the offset of each word's lines, and the garbage collector never has to look at the rest.
+ * The operating system pages the columns in as they are used and can drop them again when memory is short, since they
+ * are still in the file.
+ * <br>
+ * A single mapping can't be more than 2GB, so each column is mapped as a series of windows of the same size and a line
+ * is found by its window and its place in the window.
+ *
+ * @author Kevin Becker
+ */
+class OffHeapWordStore extends WordStore
+{
+    // Every window holds this many values (a power of two, so finding a line is a shift and a mask)
+    private static final int WINDOW_SHIFT = 27;
+    private static final int WINDOW_SIZE = 1 << WINDOW_SHIFT;
+    private static final int WINDOW_MASK = WINDOW_SIZE - 1;
+
+    private IntBuffer[] years;
+    private LongBuffer[] counts;
+    private LongBuffer[] prefixSums;
+
+    /**
+     * Constructs a new OffHeapWordStore by mapping the columns of a snapshot. The mappings stay valid after the channel
+     * is closed.
+     * @param dictionary the ids of the words.
+     * @param lineOffsets the first line of each word id, followed by the number of lines.
+     * @param channel the snapshot file.
+     * @param yearsPosition where the years start in the file.
+     * @param countsPosition where the counts start in the file.
+     * @param prefixSumsPosition where the prefix sums start in the file.
+     * @throws IOException if the file cannot be mapped.
+     */
+    OffHeapWordStore(WordDictionary dictionary, int[] lineOffsets, FileChannel channel, long yearsPosition,
+                     long countsPosition, long prefixSumsPosition) throws IOException
+    {
+        super(dictionary, lineOffsets);
+        int lineCount = lineOffsets[lineOffsets.length - 1];
+
+        years = new IntBuffer[windowsFor(lineCount)];
+        for(int window = 0; window < years.length; window++)
+        {
+            long first = (long)window << WINDOW_SHIFT;
+            long length = Math.min(WINDOW_SIZE, lineCount - first);
+            years[window] = channel.map(FileChannel.MapMode.READ_ONLY, yearsPosition + first * Integer.BYTES,
+                    length * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        }
+        counts = mapLongs(channel, countsPosition, lineCount);
+        prefixSums = mapLongs(channel, prefixSumsPosition, lineCount + 1L);
+    }
+
+    @Override
+    long getCount(int id)
+    {
+        return prefixSumAt(endLine(id)) - prefixSumAt(firstLine(id));
+    }
+
+    @Override
+    long getCount(int id, int year)
+    {
+        int line = lowerBound(id, year);
+        return line < endLine(id) && yearOf(line) == year ? countOf(line) : 0;
+    }
+
+    @Override
+    long getCount(int id, int startYear, int endYear)
+    {
+        if(startYear > endYear)
+            return 0;
+
+        int from = lowerBound(id, startYear);
+        int to = endYear == Integer.MAX_VALUE ? endLine(id) : lowerBound(id, endYear + 1);
+
+        return prefixSumAt(to) - prefixSumAt(from);
+    }
+
+    @Override
+    int lowerBound(int id, int year)
+    {
+        int low = firstLine(id);
+        int high = endLine(id);
+        while(low < high)
+        {
+            int middle = (low + high) >>> 1;
+            if(yearOf(middle) < year)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    @Override
+    int yearOf(int line)
+    {
+        return years[line >>> WINDOW_SHIFT].get(line & WINDOW_MASK);
+    }
+
+    @Override
+    long countOf(int line)
+    {
+        return counts[line >>> WINDOW_SHIFT].get(line & WINDOW_MASK);
+    }
+
+    /**
+     * Estimates the bytes each part of the store holds. The mapped columns are not on the heap, they are in the page
+     * cache for as long as the operating system keeps them there.
+     * @return The estimated size in bytes of each part, by name.
+     */
+    @Override
+    Map<String, Long> estimateBytes()
+    {
+        long lineCount = lineCount();
+        Map<String, Long> parts = new LinkedHashMap<>();
+        parts.put("word dictionary", getDictionary().estimateBytes());
+        parts.put("line offsets", WordDataStats.arrayBytes(getLineOffsets().length, Integer.BYTES));
+        parts.put("years (mapped, off heap)", lineCount * Integer.BYTES);
+        parts.put("counts (mapped, off heap)", lineCount * Long.BYTES);
+        parts.put("prefix sums (mapped, off heap)", (lineCount + 1) * Long.BYTES);
+        return parts;
+    }
+
+    private long prefixSumAt(int line)
+    {
+        return prefixSums[line >>> WINDOW_SHIFT].get(line & WINDOW_MASK);
+    }
+
+    private static LongBuffer[] mapLongs(FileChannel channel, long position, long length) throws IOException
+    {
+        LongBuffer[] windows = new LongBuffer[windowsFor(length)];
+        for(int window = 0; window < windows.length; window++)
+        {
+            long first = (long)window << WINDOW_SHIFT;
+            long size = Math.min(WINDOW_SIZE, length - first);
+            windows[window] = channel.map(FileChannel.MapMode.READ_ONLY, position + first * Long.BYTES,
+                    size * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+        }
+        return windows;
+    }
+
+    private static int windowsFor(long length)
+    {
+        return (int)((length + WINDOW_SIZE - 1) >>> WINDOW_SHIFT);
+    }
+}
@@ -0,0 +1,331 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A ParsedChunk holds the 1-gram lines (word, year, count) that were parsed out of one block of a data file. The
+ * lines are parsed straight from the bytes, nothing is split with a regex and no String is made for the year or count.
+ * <br>
+ * The 1-gram files list all of a word's years one after another, so the lines are stored as runs: each run is one word
+ * and the years and counts of the lines in that run. A String is only made when the word changes from one line to the
+ * next rather than once per line.
+ *
+ * @author Kevin Becker
+ */
+class ParsedChunk
+{
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private String[] runWords = new String[INITIAL_CAPACITY];
+    // runEnds[r] is the index of the line after the last line of run r
+    private int[] runEnds = new int[INITIAL_CAPACITY];
+    // runPositions[r] is the index in the buffer of the first byte of run r
+    private int[] runPositions = new int[INITIAL_CAPACITY];
+    // The index in the buffer after the last byte that was parsed
+    private int endPosition = 0;
+    private int runCount = 0;
+
+    private int[] years = new int[INITIAL_CAPACITY];
+    private long[] counts = new long[INITIAL_CAPACITY];
+    private int lineCount = 0;
+
+    // Used while parsing to compare the word of a line to the word of the line before it
+    private byte[] lastWordBytes = new byte[64];
+    private int lastWordLength = -1;
+
+    /**
+     * Parses every line between the buffer's position and its limit. The buffer must start at the beginning of a line
+     * and end at the end of one.
+     * @param buffer the bytes to be parsed.
+     * @return A ParsedChunk of every line in the buffer.
+     * @throws IllegalArgumentException if a line is not in the 1-gram format.
+     */
+    static ParsedChunk parse(ByteBuffer buffer)
+    {
+        ParsedChunk chunk = new ParsedChunk();
+        int position = buffer.position();
+        int limit = buffer.limit();
+
+        while(position < limit)
+            position = chunk.parseLine(buffer, position, limit);
+        chunk.endPosition = limit;
+
+        return chunk;
+    }
+
+    /**
+     * Parses a single line.
+     * @param buffer the bytes being parsed.
+     * @param position the index of the first byte of the line.
+     * @param limit the index after the last byte that can be read.
+     * @return The index of the first byte of the next line.
+     */
+    private int parseLine(ByteBuffer buffer, int position, int limit)
+    {
+        // Blank lines (and the \r of a Windows line ending) are skipped
+        byte first = buffer.get(position);
+        if(first == '\n' || first == '\r')
+            return position + 1;
+
+        // tokenizedLine: 0 => word, 1 => year, 2 => number of occurrences in year
+        int wordStart = position;
+        while(position < limit && buffer.get(position) != ',' && buffer.get(position) != '\n')
+            position++;
+        if(position == limit || buffer.get(position) != ',')
+            throw malformedLine(buffer, wordStart, position);
+        int wordEnd = position;
+
+        position = skipWhitespace(buffer, position + 1, limit);
+        long year = 0;
+        boolean negativeYear = position < limit && buffer.get(position) == '-';
+        if(negativeYear)
+            position++;
+        int yearDigits = position;
+        while(position < limit && isDigit(buffer.get(position)))
+        {
+            // Checked on every digit, so a long run of them can't wrap around
+            year = year * 10 + (buffer.get(position++) - '0');
+            if(year > Integer.MAX_VALUE)
+                throw malformedLine(buffer, wordStart, position);
+        }
+        if(position == limit || buffer.get(position) != ',' || position == yearDigits)
+            throw malformedLine(buffer, wordStart, position);
+
+        position = skipWhitespace(buffer, position + 1, limit);
+        int countStart = position;
+        long count = 0;
+        while(position < limit && isDigit(buffer.get(position)))
+        {
+            int digit = buffer.get(position++) - '0';
+            if(count > (Long.MAX_VALUE - digit) / 10)
+                throw malformedLine(buffer, wordStart, position);
+            count = count * 10 + digit;
+        }
+        if(position == countStart)
+            throw malformedLine(buffer, wordStart, position);
+
+        // Anything else on the line (trailing spaces, a \r) is ignored
+        while(position < limit && buffer.get(position) != '\n')
+            position++;
+
+        addLine(buffer, wordStart, wordEnd, (int)(negativeYear ? -year : year), count);
+        return position + 1;
+    }
+
+    /**
+     * Adds a parsed line, starting a new run if the word is not the same as the word of the line before it.
+     * @param buffer the bytes being parsed.
+     * @param wordStart the index of the first byte of the word.
+     * @param wordEnd the index after the last byte of the word.
+     * @param year the year of the line.
+     * @param count the number of occurrences of the line.
+     */
+    private void addLine(ByteBuffer buffer, int wordStart, int wordEnd, int year, long count)
+    {
+        if(!sameAsLastWord(buffer, wordStart, wordEnd))
+        {
+            if(runCount == runWords.length)
+            {
+                runWords = Arrays.copyOf(runWords, runCount * 2);
+                runEnds = Arrays.copyOf(runEnds, runCount * 2);
+                runPositions = Arrays.copyOf(runPositions, runCount * 2);
+            }
+            runPositions[runCount] = wordStart;
+            runWords[runCount++] = decodeWord(buffer, wordStart, wordEnd);
+        }
+
+        if(lineCount == years.length)
+        {
+            years = Arrays.copyOf(years, lineCount * 2);
+            counts = Arrays.copyOf(counts, lineCount * 2);
+        }
+        years[lineCount] = year;
+        counts[lineCount] = count;
+        lineCount++;
+        runEnds[runCount - 1] = lineCount;
+    }
+
+    /**
+     * Checks if a word is byte for byte the same as the word of the last line, remembering it if it isn't.
+     * @param buffer the bytes being parsed.
+     * @param wordStart the index of the first byte of the word.
+     * @param wordEnd the index after the last byte of the word.
+     * @return true if it is the same word as the last line, false otherwise.
+     */
+    private boolean sameAsLastWord(ByteBuffer buffer, int wordStart, int wordEnd)
+    {
+        int length = wordEnd - wordStart;
+
+        if(length == lastWordLength)
+        {
+            int index = 0;
+            while(index < length && lastWordBytes[index] == buffer.get(wordStart + index))
+                index++;
+            if(index == length)
+                return true;
+        }
+
+        if(length > lastWordBytes.length)
+            lastWordBytes = new byte[Math.max(length, lastWordBytes.length * 2)];
+        for(int index = 0; index < length; index++)
+            lastWordBytes[index] = buffer.get(wordStart + index);
+        lastWordLength = length;
+
+        return false;
+    }
+
+    /**
+     * Makes the lower case String of a word. Plain ASCII words are lower cased byte by byte, anything else is decoded
+     * as UTF-8 and lower cased the same way the Scanner based reader did.
+     * @param buffer the bytes being parsed.
+     * @param wordStart the index of the first byte of the word.
+     * @param wordEnd the index after the last byte of the word.
+     * @return The lower case word.
+     */
+    private String decodeWord(ByteBuffer buffer, int wordStart, int wordEnd)
+    {
+        int length = wordEnd - wordStart;
+        byte[] bytes = new byte[length];
+        boolean ascii = true;
+
+        for(int index = 0; index < length; index++)
+        {
+            byte b = buffer.get(wordStart + index);
+            if(b < 0)
+                ascii = false;
+            else if(b >= 'A' && b <= 'Z')
+                b += 'a' - 'A';
+            bytes[index] = b;
+        }
+
+        if(ascii)
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+
+        for(int index = 0; index < length; index++)
+            bytes[index] = buffer.get(wordStart + index);
+        return new String(bytes, StandardCharsets.UTF_8).toLowerCase();
+    }
+
+    private static int skipWhitespace(ByteBuffer buffer, int position, int limit)
+    {
+        while(position < limit && (buffer.get(position) == ' ' || buffer.get(position) == '\t'))
+            position++;
+        return position;
+    }
+
+    private static boolean isDigit(byte b)
+    {
+        return b >= '0' && b <= '9';
+    }
+
+    private static IllegalArgumentException malformedLine(ByteBuffer buffer, int lineStart, int position)
+    {
+        int lineEnd = position;
+        while(lineEnd < buffer.limit() && buffer.get(lineEnd) != '\n')
+            lineEnd++;
+
+        byte[] line = new byte[lineEnd - lineStart];
+        for(int index = 0; index < line.length; index++)
+            line[index] = buffer.get(lineStart + index);
+
+        return new IllegalArgumentException("Malformed 1-gram line: \"" + new String(line, StandardCharsets.UTF_8) + "\"");
+    }
+
+    /**
+     * Gets the number of runs (consecutive lines for the same word) in the chunk.
+     * @return The number of runs.
+     */
+    int getRunCount()
+    {
+        return runCount;
+    }
+
+    /**
+     * Gets the word of a run.
+     * @param run the index of the run.
+     * @return The lower case word of the run.
+     */
+    String getRunWord(int run)
+    {
+        return runWords[run];
+    }
+
+    /**
+     * Gets the index of the first line of a run.
+     * @param run the index of the run.
+     * @return The index of the first line of the run.
+     */
+    int getRunStart(int run)
+    {
+        return run == 0 ? 0 : runEnds[run - 1];
+    }
+
+    /**
+     * Gets the index after the last line of a run.
+     * @param run the index of the run.
+     * @return The index after the last line of the run.
+     */
+    int getRunEnd(int run)
+    {
+        return runEnds[run];
+    }
+
+    /**
+     * Gets where a run starts in the bytes that were parsed.
+     * @param run the index of the run.
+     * @return The index in the buffer of the first byte of the run.
+     */
+    int getRunPosition(int run)
+    {
+        return runPositions[run];
+    }
+
+    /**
+     * Gets where a run ends in the bytes that were parsed. This is where the next run starts, so any blank lines
+     * after the run's last line are part of it.
+     * @param run the index of the run.
+     * @return The index in the buffer after the last byte of the run.
+     */
+    int getRunEndPosition(int run)
+    {
+        return run + 1 < runCount ? runPositions[run + 1] : endPosition;
+    }
+
+    /**
+     * Gets the number of bytes that were parsed.
+     * @return The number of bytes from the start of the buffer to the end of the last line.
+     */
+    int getByteLength()
+    {
+        return endPosition;
+    }
+
+    /**
+     * Gets the year of a line.
+     * @param line the index of the line.
+     * @return The year of the line.
+     */
+    int getYear(int line)
+    {
+        return years[line];
+    }
+
+    /**
+     * Gets the number of occurrences of a line.
+     * @param line the index of the line.
+     * @return The number of occurrences of the line.
+     */
+    long getCount(int line)
+    {
+        return counts[line];
+    }
+
+    /**
+     * Gets the number of lines in the chunk.
+     * @return The number of lines.
+     */
+    int getLineCount()
+    {
+        return lineCount;
+    }
+}
@@ -0,0 +1,85 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * A PrefixIndex keeps every word id sorted by the spelling of its word. All of the words that start with the same
+ * letters are next to each other in that order, so they can be found with two binary searches and then read off one
+ * after another. A prefix query takes time in proportion to the number of words that match, not to the vocabulary.
+ *
+ * @author Kevin Becker
+ */
+class PrefixIndex
+{
+    private List<String> wordsById;
+    // The word ids in alphabetical order of their words
+    private int[] idsBySpelling;
+
+    /**
+     * Constructs a new PrefixIndex by sorting the words.
+     * @param wordsById every word, where the index of a word is its id.
+     * @param idOf finds the id of a word.
+     */
+    PrefixIndex(List<String> wordsById, ToIntFunction<String> idOf)
+    {
+        this.wordsById = wordsById;
+
+        // Sorting the Strings themselves and then looking up their ids saves boxing every id to sort it
+        String[] sorted = wordsById.toArray(new String[0]);
+        Arrays.parallelSort(sorted);
+        idsBySpelling = new int[sorted.length];
+        for(int index = 0; index < sorted.length; index++)
+            idsBySpelling[index] = idOf.applyAsInt(sorted[index]);
+    }
+
+    /**
+     * Finds every word that starts with some letters.
+     * @param prefix the letters the words start with.
+     * @return The ids of the words, in alphabetical order of the words.
+     */
+    int[] idsWithPrefix(String prefix)
+    {
+        int from = firstAtLeast(prefix);
+
+        // Every word from "from" on starts with the prefix up to some point, and none of them do after it
+        int low = from;
+        int high = idsBySpelling.length;
+        while(low < high)
+        {
+            int middle = (low + high) >>> 1;
+            if(wordsById.get(idsBySpelling[middle]).startsWith(prefix))
+                low = middle + 1;
+            else
+                high = middle;
+        }
+
+        return Arrays.copyOfRange(idsBySpelling, from, low);
+    }
+
+    /**
+     * Finds the first word, in alphabetical order, that is not before a word.
+     */
+    private int firstAtLeast(String word)
+    {
+        int low = 0;
+        int high = idsBySpelling.length;
+        while(low < high)
+        {
+            int middle = (low + high) >>> 1;
+            if(wordsById.get(idsBySpelling[middle]).compareTo(word) < 0)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Estimates the bytes the index holds on the heap.
+     * @return The estimated size in bytes.
+     */
+    long estimateBytes()
+    {
+        return WordDataStats.arrayBytes(idsBySpelling.length, Integer.BYTES);
+    }
+}
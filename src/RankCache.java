@@ -0,0 +1,261 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A RankCache keeps the complete ranking of the most recently used year ranges, so that once a range has been ranked
+ * the rank of any word in it is an array lookup. A ranking is the rank of every word id (the same ranks the
+ * RankingEngine gives), so every entry is the same size: one int per word. That means a memory budget is just a limit
+ * on the number of entries, and the least recently used range is thrown out when there are too many.
+ * <br>
+ * Lookups are safe from any number of threads. The map is only locked long enough to find or add an entry, the ranking
+ * itself is computed outside of the lock. When several threads miss on the same range at once only the first one
+ * computes it and the others wait for its result.
+ *
+ * @author Kevin Becker
+ */
+class RankCache
+{
+    // The most rankings that are kept, unless the memory budget allows fewer
+    static final int DEFAULT_MAX_ENTRIES = 64;
+    // The most memory the rankings can take up
+    static final long DEFAULT_MAX_BYTES = 256L << 20;
+    // The most year ranges remembered as asked about once but not ranked
+    static final int MAX_SEEN_ONCE = 1024;
+
+    private Ranker ranker;
+    private int wordCount;
+    private int capacity;
+    // Keyed by the year range, in least recently used order
+    private LinkedHashMap<Long, FutureTask<int[]>> rankings;
+    // The year ranges repeatedRanksFor has been asked about once, in least recently used order
+    private LinkedHashMap<Long, Boolean> seenOnce;
+
+    private AtomicLong hits = new AtomicLong();
+    private AtomicLong misses = new AtomicLong();
+    private AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Constructs a new RankCache with the default limits.
+     * @param ranker computes the rankings which aren't cached, usually RankingEngine.rankAll.
+     * @param wordCount the number of words that are ranked.
+     */
+    RankCache(Ranker ranker, int wordCount)
+    {
+        this(ranker, wordCount, DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Constructs a new RankCache.
+     * @param ranker computes the rankings which aren't cached, usually RankingEngine.rankAll.
+     * @param wordCount the number of words that are ranked.
+     * @param maxEntries the most rankings to keep.
+     * @param maxBytes the most memory the rankings can take up, at least one ranking is always kept.
+     */
+    RankCache(Ranker ranker, int wordCount, int maxEntries, long maxBytes)
+    {
+        this.ranker = ranker;
+        this.wordCount = wordCount;
+        long bytesPerEntry = Math.max(1, (long)wordCount * Integer.BYTES);
+        this.capacity = (int)Math.max(1, Math.min(maxEntries, maxBytes / bytesPerEntry));
+
+        // An access ordered LinkedHashMap moves an entry to the end every time it is used, so the eldest entry is
+        // always the least recently used one
+        this.rankings = new LinkedHashMap<Long, FutureTask<int[]>>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, FutureTask<int[]>> eldest)
+            {
+                if(size() <= capacity)
+                    return false;
+                evictions.incrementAndGet();
+                return true;
+            }
+        };
+        this.seenOnce = new LinkedHashMap<Long, Boolean>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest)
+            {
+                return size() > MAX_SEEN_ONCE;
+            }
+        };
+    }
+
+    /**
+     * Gets the ranking of a year range, computing it if it isn't cached.
+     * @param startYear the first year of the range of time desired.
+     * @param endYear the last year of the range of time desired.
+     * @return The rank of every word id in the range, it must not be changed.
+     */
+    int[] ranksFor(int startYear, int endYear)
+    {
+        Long key = keyOf(startYear, endYear);
+        FutureTask<int[]> ranking;
+        boolean computeHere = false;
+
+        synchronized(rankings)
+        {
+            ranking = rankings.get(key);
+            if(ranking == null)
+            {
+                ranking = new FutureTask<>(() -> ranker.rankAll(startYear, endYear));
+                rankings.put(key, ranking);
+                computeHere = true;
+            }
+        }
+
+        if(computeHere)
+        {
+            misses.incrementAndGet();
+            ranking.run();
+        }
+        else
+            hits.incrementAndGet();
+
+        try
+        {
+            return ranking.get();
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a ranking", e);
+        }
+        catch(ExecutionException e)
+        {
+            // A failed ranking isn't kept, so the next lookup tries again
+            synchronized(rankings)
+            {
+                rankings.remove(key, ranking);
+            }
+            if(e.getCause() instanceof RuntimeException)
+                throw (RuntimeException)e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Gets the ranking of a year range if it is cached or has been asked for before. The first time a range is asked
+     * for nothing is computed and null is returned, because ranking every word is only worth it when the range is used
+     * again, and a single word can be ranked with one pass instead. The second time it is ranked and cached.
+     * @param startYear the first year of the range of time desired.
+     * @param endYear the last year of the range of time desired.
+     * @return The rank of every word id in the range, it must not be changed, or null the first time.
+     */
+    int[] repeatedRanksFor(int startYear, int endYear)
+    {
+        Long key = keyOf(startYear, endYear);
+        synchronized(rankings)
+        {
+            if(!rankings.containsKey(key) && seenOnce.remove(key) == null)
+            {
+                seenOnce.put(key, Boolean.TRUE);
+                return null;
+            }
+        }
+        return ranksFor(startYear, endYear);
+    }
+
+    /**
+     * Gets the ranking of a year range only if it is already cached and finished. This doesn't count as a hit or a
+     * miss, it lets callers use a ranking that is lying around without paying to compute one.
+     * @param startYear the first year of the range of time desired.
+     * @param endYear the last year of the range of time desired.
+     * @return The rank of every word id in the range, or null if it isn't cached.
+     */
+    int[] cachedRanksFor(int startYear, int endYear)
+    {
+        FutureTask<int[]> ranking;
+        synchronized(rankings)
+        {
+            ranking = rankings.get(keyOf(startYear, endYear));
+        }
+        if(ranking == null || !ranking.isDone())
+            return null;
+
+        try
+        {
+            return ranking.get();
+        }
+        catch(InterruptedException | ExecutionException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * @return The number of lookups which found their ranking already cached (or being computed).
+     */
+    long getHits()
+    {
+        return hits.get();
+    }
+
+    /**
+     * @return The number of lookups which had to compute their ranking.
+     */
+    long getMisses()
+    {
+        return misses.get();
+    }
+
+    /**
+     * @return The number of rankings which were thrown out to make room.
+     */
+    long getEvictions()
+    {
+        return evictions.get();
+    }
+
+    /**
+     * @return The number of rankings cached right now.
+     */
+    int size()
+    {
+        synchronized(rankings)
+        {
+            return rankings.size();
+        }
+    }
+
+    /**
+     * @return The most rankings that will be kept.
+     */
+    int getCapacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * @return The number of bytes each cached ranking takes up.
+     */
+    long getBytesPerEntry()
+    {
+        return WordDataStats.arrayBytes(wordCount, Integer.BYTES);
+    }
+
+    /**
+     * A Ranker computes the complete ranking of a year range.
+     */
+    interface Ranker
+    {
+        /**
+         * Computes the rank of every word id for a year range.
+         * @param startYear the first year of the range of time desired.
+         * @param endYear the last year of the range of time desired.
+         * @return The rank of each word id, the highest ranked word is 1.
+         */
+        int[] rankAll(int startYear, int endYear);
+    }
+
+    /**
+     * Packs a year range into a single key.
+     */
+    private static Long keyOf(int startYear, int endYear)
+    {
+        return ((long)startYear << 32) | (endYear & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,125 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * A RankDelta is the words whose rank changed the most between two periods: the ones that went up the most (risers)
+ * and the ones that went down the most (fallers). Only words that were used in both periods have a rank in each, so a
+ * word that is new in the second period or gone from it is in neither list.
+ *
+ * @author Kevin Becker
+ */
+class RankDelta
+{
+    /**
+     * How one word's rank changed.
+     */
+    static class Move
+    {
+        private String word;
+        private int fromRank;
+        private int toRank;
+
+        /**
+         * Constructs a new Move.
+         * @param word the word.
+         * @param fromRank its rank in the first period.
+         * @param toRank its rank in the second period.
+         */
+        Move(String word, int fromRank, int toRank)
+        {
+            this.word = word;
+            this.fromRank = fromRank;
+            this.toRank = toRank;
+        }
+
+        /**
+         * @return The word.
+         */
+        String getWord()
+        {
+            return word;
+        }
+
+        /**
+         * @return The word's rank in the first period.
+         */
+        int getFromRank()
+        {
+            return fromRank;
+        }
+
+        /**
+         * @return The word's rank in the second period.
+         */
+        int getToRank()
+        {
+            return toRank;
+        }
+
+        /**
+         * @return How many places the word went up, negative if it went down.
+         */
+        int getChange()
+        {
+            return fromRank - toRank;
+        }
+    }
+
+    private List<Move> risers;
+    private List<Move> fallers;
+
+    /**
+     * Constructs a new RankDelta.
+     * @param risers the words that went up, the biggest move first.
+     * @param fallers the words that went down, the biggest move first.
+     */
+    RankDelta(List<Move> risers, List<Move> fallers)
+    {
+        this.risers = Collections.unmodifiableList(risers);
+        this.fallers = Collections.unmodifiableList(fallers);
+    }
+
+    /**
+     * Finds the biggest moves between two rankings of the same words. Both directions are searched with
+     * RankingEngine.biggestRises, so equal moves are in the order of the words.
+     * @param fromRanks the rank of each word in the first period, UNRANKED for a word that wasn't used.
+     * @param toRanks the rank of each word in the second period, UNRANKED for a word that wasn't used.
+     * @param k how many words are wanted in each direction.
+     * @param wordOf gets a word from its index in the rankings.
+     * @return Up to k risers and up to k fallers.
+     */
+    static RankDelta between(int[] fromRanks, int[] toRanks, int k, IntFunction<String> wordOf)
+    {
+        return new RankDelta(moves(RankingEngine.biggestRises(fromRanks, toRanks, k), fromRanks, toRanks, wordOf),
+                moves(RankingEngine.biggestRises(toRanks, fromRanks, k), fromRanks, toRanks, wordOf));
+    }
+
+    /**
+     * Looks up the word and ranks of each id.
+     */
+    private static List<Move> moves(int[] ids, int[] fromRanks, int[] toRanks, IntFunction<String> wordOf)
+    {
+        List<Move> moves = new ArrayList<>(ids.length);
+        for(int id : ids)
+            moves.add(new Move(wordOf.apply(id), fromRanks[id], toRanks[id]));
+        return moves;
+    }
+
+    /**
+     * @return The words that went up the most, the biggest move first.
+     */
+    List<Move> getRisers()
+    {
+        return risers;
+    }
+
+    /**
+     * @return The words that went down the most, the biggest move first.
+     */
+    List<Move> getFallers()
+    {
+        return fallers;
+    }
+}
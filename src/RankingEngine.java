@@ -0,0 +1,500 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.IntToLongFunction;
+import java.util.stream.IntStream;
+
+/**
+ * The RankingEngine computes the rank of a single word without sorting the vocabulary. A word's rank is one more than
+ * the number of words which beat it, so one pass over the vocabulary counting those words is all that is needed.
+ * <br>
+ * A word beats another word if it has more occurrences in the range, or if it has the same number of occurrences and
+ * was read in first (has a lower id). Breaking ties this way means every word gets a distinct rank and the ranks
+ * never change from run to run.
+ *
+ * @author Kevin Becker
+ */
+class RankingEngine
+{
+    // Vocabularies at least this big are split up so top words can be selected on several threads
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    private WordStore store;
+
+    /**
+     * Constructs a new RankingEngine over the words of a store.
+     * @param store the WordStore of every word that can be ranked.
+     */
+    RankingEngine(WordStore store)
+    {
+        this.store = store;
+    }
+
+    /**
+     * Computes the rank of a word for a given year range.
+     * @param targetId the id of the word being ranked.
+     * @param startYear the first year of the range of time desired.
+     * @param endYear the last year of the range of time desired.
+     * @return An int representing the rank of the word in the range, the highest ranked word is 1.
+     */
+    int rankOf(int targetId, int startYear, int endYear)
+    {
+        long targetCount = store.getCount(targetId, startYear, endYear);
+
+        // Starts at 1 because the highest ranked word has nothing beating it
+        int rank = 1;
+
+        for(int id = 0; id < store.wordCount(); id++)
+        {
+            if(beats(store.getCount(id, startYear, endYear), id, targetCount, targetId))
+                rank++;
+        }
+
+        return rank;
+    }
+
+    /**
+     * Computes the ranks of several words for the same year range with a single pass over the vocabulary.
+     * <br>
+     * The targets are sorted best first, so the targets a word beats are always the ones from some index to the end.
+     * Each word finds that index with a binary search and marks it, then a running sum of the marks is the number of
+     * words beating each target.
+     * @param targetIds the ids of the words being ranked.
+     * @param startYear the first year of the range of time desired.
+     * @param endYear the last year of the range of time desired.
+     * @return The rank of each target, in the same order as targetIds.
+     */
+    int[] ranksOf(int[] targetIds, int startYear, int endYear)
+    {
+        int targets = targetIds.length;
+        long[] targetCounts = new long[targets];
+        for(int index = 0; index < targets; index++)
+            targetCounts[index] = store.getCount(targetIds[index], startYear, endYear);
+
+        // Sorts the targets best first, targetOrder[i] is the index into targetIds of the i-th best target
+        int[] targetOrder = new int[targets];
+        for(int index = 0; index < targets; index++)
+            targetOrder[index] = index;
+        int[] scratch = new int[targets];
+        mergeSort(targetOrder, scratch, 0, targets, targetCounts, targetIds);
+
+        long[] sortedCounts = new long[targets];
+        int[] sortedIds = new int[targets];
+        for(int index = 0; index < targets; index++)
+        {
+            sortedCounts[index] = targetCounts[targetOrder[index]];
+            sortedIds[index] = targetIds[targetOrder[index]];
+        }
+
+        int[] marks = new int[targets + 1];
+        for(int id = 0; id < store.wordCount(); id++)
+        {
+            long count = store.getCount(id, startYear, endYear);
+
+            // Finds the first (best) target this word beats
+            int low = 0;
+            int high = targets;
+            while(low < high)
+            {
+                int middle = (low + high) >>> 1;
+                if(beats(count, id, sortedCounts[middle], sortedIds[middle]))
+                    high = middle;
+                else
+                    low = middle + 1;
+            }
+            marks[low]++;
+        }
+
+        int[] ranks = new int[targets];
+        int beaten = 0;
+        for(int index = 0; index < targets; index++)
+        {
+            beaten += marks[index];
+            ranks[targetOrder[index]] = beaten + 1;
+        }
+        return ranks;
+    }
+
+    /**
+     * Computes the rank of every word for a year range by sorting the whole vocabulary. This costs more than ranking a
+     * few words, but afterwards the rank of any word in the range is an array lookup, which is what the RankCache keeps.
+     * Words with no occurrences in the range are ranked after all of the others.
+     * @param startYear the first year of the range of time desired.
+     * @param endYear the last year of the range of time desired.
+     * @return The rank of each word id, the highest ranked word is 1.
+     */
+    int[] rankAll(int startYear, int endYear)
+    {
+        long[] totals = new long[store.wordCount()];
+        for(int id = 0; id < totals.length; id++)
+            totals[id] = store.getCount(id, startYear, endYear);
+        return ranksFromOrder(orderByTotal(totals));
+    }
+
+    /**
+     * Finds the k words with the most occurrences in a year range without sorting the vocabulary. Each part of the
+     * vocabulary keeps the best k words it has seen in a bounded heap (the worst of them on top so it can be replaced),
+     * which takes O(V log k). Big vocabularies are split into parts which are searched in parallel and then merged.
+     * Words with no occurrences in the range are never included.
+     * @param k the number of words wanted.
+     * @param startYear the first year of the range of time desired.
+     * @param endYear the last year of the range of time desired.
+     * @return The ids of at most k words, best first.
+     */
+    int[] topIds(int k, int startYear, int endYear)
+    {
+        int wordCount = store.wordCount();
+        if(k <= 0 || wordCount == 0)
+            return new int[0];
+        // Nothing past every word can be wanted, which keeps a huge k from overflowing
+        int wanted = Math.min(k, wordCount);
+
+        TopHeap top;
+        if(wordCount < PARALLEL_THRESHOLD)
+            top = topOfPart(wanted, startYear, endYear, 0, wordCount);
+        else
+        {
+            int parts = partsFor(wordCount);
+            top = IntStream.range(0, parts)
+                    .parallel()
+                    .mapToObj(part -> topOfPart(wanted, startYear, endYear,
+                            (int)((long)wordCount * part / parts), (int)((long)wordCount * (part + 1) / parts)))
+                    .reduce(TopHeap::mergeInto)
+                    .get();
+        }
+
+        return top.drainBestFirst();
+    }
+
+    /**
+     * Finds the best k words among a run of ids.
+     */
+    private TopHeap topOfPart(int k, int startYear, int endYear, int fromId, int toId)
+    {
+        TopHeap top = new TopHeap(k);
+        for(int id = fromId; id < toId; id++)
+        {
+            long count = store.getCount(id, startYear, endYear);
+            if(count > 0)
+                top.offer(count, id);
+        }
+        return top;
+    }
+
+    /**
+     * Finds the k words whose rank went up the most from one ranking to another, the same way topIds finds the most
+     * common words: each part of the vocabulary keeps its best k in a bounded heap, and big vocabularies are split into
+     * parts which are searched in parallel. The words that went down the most are the ones that went up the most from
+     * toRanks to fromRanks.
+     * @param fromRanks the rank of every word id in the first period, UNRANKED for a word that wasn't used.
+     * @param toRanks the rank of every word id in the second period, UNRANKED for a word that wasn't used.
+     * @param k the number of words wanted.
+     * @return The ids of at most k words that were ranked in both periods and went up, the biggest move first and
+     *         equal moves in id order.
+     */
+    static int[] biggestRises(int[] fromRanks, int[] toRanks, int k)
+    {
+        int wordCount = fromRanks.length;
+        if(k <= 0 || wordCount == 0)
+            return new int[0];
+        // No more words can move than there are ranked ids
+        int wanted = Math.min(k, wordCount);
+
+        TopHeap top;
+        if(wordCount < PARALLEL_THRESHOLD)
+            top = risesOfPart(fromRanks, toRanks, wanted, 0, wordCount);
+        else
+        {
+            int parts = partsFor(wordCount);
+            top = IntStream.range(0, parts)
+                    .parallel()
+                    .mapToObj(part -> risesOfPart(fromRanks, toRanks, wanted,
+                            (int)((long)wordCount * part / parts), (int)((long)wordCount * (part + 1) / parts)))
+                    .reduce(TopHeap::mergeInto)
+                    .get();
+        }
+
+        return top.drainBestFirst();
+    }
+
+    /**
+     * Finds the k biggest rises among a run of ids.
+     */
+    private static TopHeap risesOfPart(int[] fromRanks, int[] toRanks, int k, int fromId, int toId)
+    {
+        TopHeap top = new TopHeap(k);
+        for(int id = fromId; id < toId; id++)
+        {
+            if(fromRanks[id] != WordData.UNRANKED && toRanks[id] != WordData.UNRANKED && toRanks[id] < fromRanks[id])
+                top.offer(fromRanks[id] - toRanks[id], id);
+        }
+        return top;
+    }
+
+    /**
+     * Decides how many parts a big vocabulary is split into to be searched in parallel.
+     */
+    private static int partsFor(int wordCount)
+    {
+        return Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() * 4,
+                wordCount / (PARALLEL_THRESHOLD / 4)));
+    }
+
+    /**
+     * A TopHeap holds the best k words offered to it. It is a min-heap of parallel primitive arrays with the worst of
+     * the kept words at the root, so a better word replaces the root in O(log k).
+     */
+    private static class TopHeap
+    {
+        // The arrays start small and grow up to k, so a part of the vocabulary only holds as much as it was offered
+        private static final int INITIAL_CAPACITY = 16;
+
+        private int k;
+        private long[] counts;
+        private int[] ids;
+        private int size = 0;
+
+        TopHeap(int k)
+        {
+            this.k = k;
+            counts = new long[Math.min(k, INITIAL_CAPACITY)];
+            ids = new int[counts.length];
+        }
+
+        void offer(long count, int id)
+        {
+            if(size < k)
+            {
+                if(size == counts.length)
+                {
+                    int capacity = (int)Math.min(k, 2L * counts.length);
+                    counts = Arrays.copyOf(counts, capacity);
+                    ids = Arrays.copyOf(ids, capacity);
+                }
+                // Not full yet, so the word is added at the bottom and moved up past any better words
+                int at = size++;
+                while(at > 0)
+                {
+                    int parent = (at - 1) >>> 1;
+                    if(!beats(counts[parent], ids[parent], count, id))
+                        break;
+                    counts[at] = counts[parent];
+                    ids[at] = ids[parent];
+                    at = parent;
+                }
+                counts[at] = count;
+                ids[at] = id;
+            }
+            else if(beats(count, id, counts[0], ids[0]))
+            {
+                siftDown(count, id);
+            }
+        }
+
+        /**
+         * Replaces the root with a word and moves it down past any worse words.
+         */
+        private void siftDown(long count, int id)
+        {
+            int at = 0;
+            while(true)
+            {
+                int child = 2 * at + 1;
+                if(child >= size)
+                    break;
+                if(child + 1 < size && beats(counts[child], ids[child], counts[child + 1], ids[child + 1]))
+                    child++;
+                if(!beats(count, id, counts[child], ids[child]))
+                    break;
+                counts[at] = counts[child];
+                ids[at] = ids[child];
+                at = child;
+            }
+            counts[at] = count;
+            ids[at] = id;
+        }
+
+        TopHeap mergeInto(TopHeap other)
+        {
+            for(int index = 0; index < other.size; index++)
+                offer(other.counts[index], other.ids[index]);
+            return this;
+        }
+
+        /**
+         * Empties the heap, worst first, filling the result from the back.
+         * @return The ids in the heap, best first.
+         */
+        int[] drainBestFirst()
+        {
+            int[] best = new int[size];
+            while(size > 0)
+            {
+                best[size - 1] = ids[0];
+                size--;
+                if(size > 0)
+                    siftDown(counts[size], ids[size]);
+            }
+            return best;
+        }
+    }
+
+    /**
+     * Sorts every word id by a total, highest first with ties broken by id, the same way rankOf ranks words.
+     * @param totals the total of each word id.
+     * @return The word ids in rank order, the id at index 0 is ranked 1.
+     */
+    static int[] orderByTotal(long[] totals)
+    {
+        int[] order = new int[totals.length];
+        for(int id = 0; id < order.length; id++)
+            order[id] = id;
+
+        // A merge sort is stable, and the ids start out in order, so equal totals stay in id order
+        int[] scratch = new int[order.length];
+        mergeSort(order, scratch, 0, order.length, totals, null);
+        return order;
+    }
+
+    /**
+     * Sorts counts highest first, in place.
+     * @param counts the counts, which are reordered.
+     * @return The same array, highest count first.
+     */
+    static long[] sortHighestFirst(long[] counts)
+    {
+        // Sorts lowest first and then flips it around
+        Arrays.parallelSort(counts);
+        for(int low = 0, high = counts.length - 1; low < high; low++, high--)
+        {
+            long swap = counts[low];
+            counts[low] = counts[high];
+            counts[high] = swap;
+        }
+        return counts;
+    }
+
+    /**
+     * Gets the first k words of a ranking, stopping at the first word with no occurrences, since those are ranked
+     * after every word that was used.
+     * @param idsByRank the word ids in rank order.
+     * @param k how many words are wanted.
+     * @param totalOf gets the total of a word id.
+     * @param wordOf gets the word of a word id.
+     * @return A List of up to k words, the highest ranked first.
+     */
+    static List<String> topOfOrder(int[] idsByRank, int k, IntToLongFunction totalOf, IntFunction<String> wordOf)
+    {
+        List<String> top = new ArrayList<>();
+        for(int rank = 0; rank < Math.min(k, idsByRank.length); rank++)
+        {
+            if(totalOf.applyAsLong(idsByRank[rank]) == 0)
+                break;
+            top.add(wordOf.apply(idsByRank[rank]));
+        }
+        return top;
+    }
+
+    /**
+     * Ranks every word id by a total, the same way rankOf ranks words, except that words with a total of 0 are left
+     * UNRANKED.
+     * @param totals the total of each word id.
+     * @return The rank of each word id, the highest ranked word is 1.
+     */
+    static int[] ranksOfUsed(long[] totals)
+    {
+        int[] ranks = ranksFromOrder(orderByTotal(totals));
+        for(int id = 0; id < ranks.length; id++)
+        {
+            if(totals[id] == 0)
+                ranks[id] = WordData.UNRANKED;
+        }
+        return ranks;
+    }
+
+    /**
+     * Turns an order of word ids into the rank of each word id.
+     * @param order the word ids in rank order.
+     * @return The rank of each word id, the highest ranked word is 1.
+     */
+    static int[] ranksFromOrder(int[] order)
+    {
+        int[] rankById = new int[order.length];
+        for(int index = 0; index < order.length; index++)
+            rankById[order[index]] = index + 1;
+        return rankById;
+    }
+
+    /**
+     * Decides if one word should be ranked ahead of another.
+     * @param count the number of occurrences of the first word.
+     * @param id the id of the first word.
+     * @param otherCount the number of occurrences of the second word.
+     * @param otherId the id of the second word.
+     * @return true if the first word is ranked ahead of the second word, false otherwise.
+     */
+    static boolean beats(long count, int id, long otherCount, int otherId)
+    {
+        return count > otherCount || (count == otherCount && id < otherId);
+    }
+
+    /**
+     * Merge sorts part of an array of indices by a total, highest first. Equal totals are ordered by tieBreaks (lowest
+     * first) when it is given, otherwise they keep their order.
+     * @param indices the indices being sorted.
+     * @param scratch an array at least as long as indices.
+     * @param from the first index to sort.
+     * @param to the index after the last one to sort.
+     * @param totals the total of each index.
+     * @param tieBreaks the value that breaks ties for each index, or null to keep ties in order.
+     */
+    private static void mergeSort(int[] indices, int[] scratch, int from, int to, long[] totals, int[] tieBreaks)
+    {
+        // Small runs are insertion sorted
+        if(to - from <= 32)
+        {
+            for(int index = from + 1; index < to; index++)
+            {
+                int moving = indices[index];
+                int at = index - 1;
+                while(at >= from && before(moving, indices[at], totals, tieBreaks))
+                {
+                    indices[at + 1] = indices[at];
+                    at--;
+                }
+                indices[at + 1] = moving;
+            }
+            return;
+        }
+
+        int middle = (from + to) >>> 1;
+        mergeSort(indices, scratch, from, middle, totals, tieBreaks);
+        mergeSort(indices, scratch, middle, to, totals, tieBreaks);
+
+        // Already in order, nothing to merge
+        if(!before(indices[middle], indices[middle - 1], totals, tieBreaks))
+            return;
+
+        System.arraycopy(indices, from, scratch, from, to - from);
+        int left = from;
+        int right = middle;
+        for(int index = from; index < to; index++)
+        {
+            if(right >= to || (left < middle && !before(scratch[right], scratch[left], totals, tieBreaks)))
+                indices[index] = scratch[left++];
+            else
+                indices[index] = scratch[right++];
+        }
+    }
+
+    /**
+     * Decides if one index strictly sorts before another.
+     */
+    private static boolean before(int index, int other, long[] totals, int[] tieBreaks)
+    {
+        if(totals[index] != totals[other])
+            return totals[index] > totals[other];
+        return tieBreaks != null && tieBreaks[index] < tieBreaks[other];
+    }
+}
@@ -0,0 +1,96 @@
+import java.util.Arrays;
+
+/**
+ * A RunSummer goes through one run of lines (one word's lines in a ParsedChunk) keeping only the first line for each
+ * year, the same rule WordStore.Builder uses for duplicate years. It can add up the lines it kept for a range of
+ * years, or hand them back one at a time. It keeps its scratch space between runs so that going through a run doesn't
+ * allocate.
+ *
+ * @author Kevin Becker
+ */
+class RunSummer
+{
+    // The count of the last run summed, and how many of the last run's lines were duplicate years
+    long total;
+    int duplicates;
+
+    // Each line's year in the high half and its place in the run in the low half
+    private long[] keys = new long[64];
+    // The lines that were kept, in year order
+    private int[] keptLines = new int[64];
+
+    /**
+     * Finds the first line of each year in a run.
+     * @param chunk the block the run is in.
+     * @param run the index of the run.
+     * @return The number of lines kept, see keptLine.
+     */
+    int keep(ParsedChunk chunk, int run)
+    {
+        duplicates = 0;
+        int start = chunk.getRunStart(run);
+        int end = chunk.getRunEnd(run);
+        int length = end - start;
+        if(length > keptLines.length)
+        {
+            keptLines = new int[Math.max(length, keptLines.length * 2)];
+            keys = new long[keptLines.length];
+        }
+
+        // The lines are usually already in year order, and then there can't be any duplicates
+        boolean ascending = true;
+        for(int line = start + 1; line < end && ascending; line++)
+            ascending = chunk.getYear(line - 1) < chunk.getYear(line);
+        if(ascending)
+        {
+            for(int index = 0; index < length; index++)
+                keptLines[index] = start + index;
+            return length;
+        }
+
+        // Otherwise sorting the keys puts the lines in year order while keeping the file order within a year, so the
+        // first line of each year is the one that is kept
+        for(int index = 0; index < length; index++)
+            keys[index] = ((long)chunk.getYear(start + index) << 32) | index;
+        Arrays.sort(keys, 0, length);
+
+        int kept = 0;
+        for(int index = 0; index < length; index++)
+        {
+            if(index > 0 && (int)(keys[index] >> 32) == (int)(keys[index - 1] >> 32))
+                duplicates++;
+            else
+                keptLines[kept++] = start + (int)keys[index];
+        }
+        return kept;
+    }
+
+    /**
+     * Gets one of the lines kept by the last call to keep.
+     * @param index which of the kept lines, from 0.
+     * @return The index of the line in its chunk.
+     */
+    int keptLine(int index)
+    {
+        return keptLines[index];
+    }
+
+    /**
+     * Adds up a run of lines, which sets total and duplicates.
+     * @param chunk the block the run is in.
+     * @param run the index of the run.
+     * @param startYear the first year to count.
+     * @param endYear the last year to count.
+     */
+    void sum(ParsedChunk chunk, int run, int startYear, int endYear)
+    {
+        total = 0;
+        int kept = keep(chunk, run);
+        for(int index = 0; index < kept; index++)
+        {
+            int year = chunk.getYear(keptLines[index]);
+            if(year >= startYear && year <= endYear)
+                total += chunk.getCount(keptLines[index]);
+        }
+    }
+}
@@ -0,0 +1,787 @@
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.IntStream;
+
+/**
+ * A ShardedWordData splits the vocabulary into shards by the hash of each word, and every shard has its own WordStore.
+ * A count only ever touches the shard that owns the word. The rank of a word in a range of years is found by scatter
+ * and gather on a fork-join pool: every shard (split further if it is big) counts how many of its words beat the
+ * target word, and the counts are added up. So ranking a word spreads over every core instead of running on one.
+ * <br>
+ * Words keep the id they would have in a WordDataImpl (the order they were read in) so that ties are broken the same
+ * way, and every rank is the same as a WordDataImpl would give.
+ *
+ * @author Kevin Becker
+ */
+public class ShardedWordData implements WordData, WordDataExporter.Source
+{
+    // The most words a single fork-join task scans before it splits in two
+    private static final int SPLIT_SIZE = 1 << 14;
+
+    private WordStore[] shards;
+    // globalIds[shard][local id] is the id of the word across every shard, ids go up within a shard
+    private int[][] globalIds;
+    // shardById[id] and localById[id] find a word by the id across every shard
+    private int[] shardById;
+    private int[] localById;
+    private RankingEngine[] rankingEngines;
+    private int[] idsByOverallRank;
+    private int[] overallRankById;
+    private long totalWords;
+    // The words in alphabetical order, for finding every word that starts with some letters
+    private PrefixIndex prefixIndex;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    // Load phase times and query latencies
+    private WordDataStats stats = new WordDataStats();
+
+    /**
+     * Read 1-gram data (or a snapshot) and split it into shards.
+     * @param fileName the name of the 1-gram data file or snapshot.
+     * @param shardCount the number of shards to split the words into.
+     * @throws FileNotFoundException if the file cannot be opened.
+     */
+    ShardedWordData(String fileName, int shardCount) throws FileNotFoundException
+    {
+        this(Collections.singletonList(fileName), shardCount);
+    }
+
+    /**
+     * Read 1-gram data from several files, merged in the order they are given (see WordDataImpl), and split it into
+     * shards.
+     * @param fileNames the names of the 1-gram data files, or of a single snapshot.
+     * @param shardCount the number of shards to split the words into.
+     * @throws FileNotFoundException if a file cannot be opened.
+     */
+    ShardedWordData(List<String> fileNames, int shardCount) throws FileNotFoundException
+    {
+        if(shardCount < 1)
+            throw new IllegalArgumentException("There must be at least one shard");
+
+        WordStore store;
+        String fileName = fileNames.get(0);
+        if(fileNames.size() == 1 && WordDataSnapshot.isSnapshot(fileName))
+        {
+            System.out.println("Reading in snapshot \"" + fileName + "\"...");
+            long phaseStart = System.nanoTime();
+            WordDataSnapshot snapshot = WordDataSnapshot.read(fileName);
+            stats.recordPhase("snapshot read", System.nanoTime() - phaseStart);
+            store = snapshot.store;
+            totalWords = snapshot.totalWords;
+            overallRankById = snapshot.overallRankById;
+            idsByOverallRank = new int[overallRankById.length];
+            for(int id = 0; id < overallRankById.length; id++)
+                idsByOverallRank[overallRankById[id] - 1] = id;
+        }
+        else
+        {
+            List<String> files = NGramLoader.expand(fileNames);
+            if(files.size() == 1)
+                System.out.println("Reading in file \"" + files.get(0) + "\"...");
+            else
+                System.out.println("Reading in " + files.size() + " files...");
+            NGramLoader loader = new NGramLoader();
+            List<ParsedChunk> chunks = loader.load(files);
+            stats.recordPhase("split into blocks", loader.getSplitNanos());
+            stats.recordPhase("read and parse", loader.getParseNanos());
+
+            long phaseStart = System.nanoTime();
+            WordStore.Builder builder = new WordStore.Builder();
+            for(ParsedChunk chunk : chunks)
+                builder.add(chunk);
+            store = builder.build();
+            stats.recordPhase("index build", System.nanoTime() - phaseStart);
+            totalWords = builder.getTotalOccurrences();
+
+            // A word can't have two values for one year, the first one in the file is the one that is kept
+            if(builder.getDuplicateYears() > 0)
+                System.out.println(builder.getDuplicateYears() + " duplicate years were found, the first value is being used.");
+
+            phaseStart = System.nanoTime();
+            long[] totals = new long[store.wordCount()];
+            for(int id = 0; id < totals.length; id++)
+                totals[id] = store.getCount(id);
+            idsByOverallRank = RankingEngine.orderByTotal(totals);
+            overallRankById = RankingEngine.ranksFromOrder(idsByOverallRank);
+            stats.recordPhase("overall rank sort", System.nanoTime() - phaseStart);
+        }
+
+        long phaseStart = System.nanoTime();
+        split(store, shardCount);
+        stats.recordPhase("split into shards", System.nanoTime() - phaseStart);
+        phaseStart = System.nanoTime();
+        prefixIndex = new PrefixIndex(wordList(), this::idOf);
+        stats.recordPhase("prefix index", System.nanoTime() - phaseStart);
+        System.out.println("Finished reading in file. (" + store.wordCount() + " words in " + shardCount + " shards)");
+    }
+
+    /**
+     * Splits the words of a store into shards. The words are gone through in id order so that the ids in each shard
+     * stay in the same order as the ids across every shard.
+     */
+    private void split(WordStore store, int shardCount)
+    {
+        int wordCount = store.wordCount();
+        shards = new WordStore[shardCount];
+        globalIds = new int[shardCount][];
+        rankingEngines = new RankingEngine[shardCount];
+        shardById = new int[wordCount];
+        localById = new int[wordCount];
+
+        int[] sizes = new int[shardCount];
+        for(int id = 0; id < wordCount; id++)
+        {
+            int shard = shardOf(store.wordOf(id));
+            shardById[id] = shard;
+            localById[id] = sizes[shard]++;
+        }
+        for(int shard = 0; shard < shardCount; shard++)
+            globalIds[shard] = new int[sizes[shard]];
+        for(int id = 0; id < wordCount; id++)
+            globalIds[shardById[id]][localById[id]] = id;
+
+        // Every shard copies its own words out of the store, so the store can be thrown away afterwards
+        IntStream.range(0, shardCount).parallel().forEach(shard ->
+        {
+            shards[shard] = store.subset(globalIds[shard]);
+            rankingEngines[shard] = new RankingEngine(shards[shard]);
+        });
+    }
+
+    /**
+     * Picks the shard that owns a word.
+     * @param word the word, in lower case.
+     * @return The index of the shard.
+     */
+    private int shardOf(String word)
+    {
+        // The hash is mixed first so that words with similar hashes still spread out over the shards
+        return Math.floorMod(word.hashCode() * 0x9E3779B9, shards.length);
+    }
+
+    /**
+     * The dump data dumps all of the data that was read in to the console, in the order it was read in.
+     */
+    @Override
+    public void dumpData()
+    {
+        WordDataExporter.dump(this);
+    }
+
+    /**
+     * Writes every word to an exporter, each one from the shard that owns it.
+     * @param exporter where the words are written.
+     * @param order the order the words are written in.
+     * @throws IOException if the words cannot be written.
+     */
+    @Override
+    public void export(WordDataExporter exporter, WordDataExporter.Order order) throws IOException
+    {
+        int[] ids = order == WordDataExporter.Order.RANK ? idsByOverallRank
+                : order == WordDataExporter.Order.WORD ? prefixIndex.idsWithPrefix("") : null;
+        for(int index = 0; index < shardById.length; index++)
+        {
+            int id = ids == null ? index : ids[index];
+            exporter.write(shards[shardById[id]], localById[id]);
+        }
+    }
+
+    /**
+     * Collects all of the words, in the order they were read in.
+     * @return A read only view of every word.
+     */
+    @Override
+    public Collection<String> words()
+    {
+        return wordList();
+    }
+
+    /**
+     * Gets a list of every word, where the index of a word is its id across every shard.
+     */
+    private List<String> wordList()
+    {
+        return new AbstractList<String>()
+        {
+            @Override
+            public String get(int id)
+            {
+                return wordOf(id);
+            }
+
+            @Override
+            public int size()
+            {
+                return shardById.length;
+            }
+        };
+    }
+
+    /**
+     * Gives the total number of lines that were read in.
+     * @return A long of the number of lines that were read in.
+     */
+    @Override
+    public long totalWords()
+    {
+        return totalWords;
+    }
+
+    /**
+     * Computes the rank of a word for the entire data set, which was computed when the data was read in.
+     * @param word the word to be looked up.
+     * @return An int representing the rank of the word for the entire data set.
+     */
+    @Override
+    public int getRankFor(String word)
+    {
+        long start = System.nanoTime();
+        int id = idOf(word.toLowerCase());
+        int rank = id < 0 ? UNRANKED : overallRankById[id];
+        stats.record(WordDataStats.Query.RANK, start);
+        return rank;
+    }
+
+    /**
+     * Computes the rank of a word for a given year period by having every shard count the words which beat it, in
+     * parallel.
+     * @param word the word to be looked up.
+     * @param startYear the first year of the range of time desired.
+     * @param endYear the last year of the range of time desired.
+     * @return An int representing the rank of the word in the range.
+     */
+    @Override
+    public int getRankFor(String word, int startYear, int endYear)
+    {
+        long start = System.nanoTime();
+        int rank = rankInRange(word, startYear, endYear);
+        stats.record(WordDataStats.Query.RANK_RANGE, start);
+        return rank;
+    }
+
+    /**
+     * Computes the rank of a word for a given single year the same way as for a range. This is only here so that it
+     * is timed separately from ranges of years.
+     * @param word the word to be looked up.
+     * @param year the year to be considered.
+     * @return An int representing the rank of the word in the year.
+     */
+    @Override
+    public int getRankFor(String word, int year)
+    {
+        long start = System.nanoTime();
+        int rank = rankInRange(word, year, year);
+        stats.record(WordDataStats.Query.RANK_YEAR, start);
+        return rank;
+    }
+
+    /**
+     * Computes the rank of a word for a given year period, without timing it.
+     */
+    private int rankInRange(String word, int startYear, int endYear)
+    {
+        int id = idOf(word.toLowerCase());
+        if(id < 0)
+            return UNRANKED;
+
+        long count = getCount(id, startYear, endYear);
+        if(count == 0)
+            return UNRANKED;
+
+        return 1 + pool.invoke(new Gather(count, id, startYear, endYear));
+    }
+
+    /**
+     * Computes the ranks of several words for a given year period with a single pass over every shard, rather than one
+     * pass for each word. The targets are sorted best first and every shard marks, for each of its words, the first
+     * target that word beats (the same as RankingEngine.ranksOf), in parallel. Adding up the marks of every shard gives
+     * the number of words beating each target.
+     * @param words the words to be looked up.
+     * @param startYear the first year of the range of time desired.
+     * @param endYear the last year of the range of time desired.
+     * @return An int array of the rank of each word, in the same order as words.
+     */
+    @Override
+    public int[] getRanksFor(Collection<String> words, int startYear, int endYear)
+    {
+        int[] ranks = new int[words.size()];
+
+        // Only the words which are in the data for the range get ranked, the rest stay UNRANKED
+        Integer[] order = new Integer[ranks.length];
+        int[] targetIds = new int[ranks.length];
+        long[] targetCounts = new long[ranks.length];
+        int targets = 0;
+        int position = 0;
+        for(String word : words)
+        {
+            int id = idOf(word.toLowerCase());
+            long count = id < 0 ? 0 : getCount(id, startYear, endYear);
+            targetIds[position] = id;
+            targetCounts[position] = count;
+            if(count != 0)
+                order[targets++] = position;
+            position++;
+        }
+        if(targets == 0)
+            return ranks;
+
+        Integer[] best = Arrays.copyOf(order, targets);
+        Arrays.sort(best, (a, b) -> RankingEngine.beats(targetCounts[a], targetIds[a], targetCounts[b], targetIds[b])
+                ? -1 : RankingEngine.beats(targetCounts[b], targetIds[b], targetCounts[a], targetIds[a]) ? 1 : 0);
+        long[] sortedCounts = new long[targets];
+        int[] sortedIds = new int[targets];
+        for(int index = 0; index < targets; index++)
+        {
+            sortedCounts[index] = targetCounts[best[index]];
+            sortedIds[index] = targetIds[best[index]];
+        }
+
+        int[] marks = IntStream.range(0, shards.length)
+                .parallel()
+                .mapToObj(shard -> marksOf(shard, sortedCounts, sortedIds, startYear, endYear))
+                .reduce((a, b) ->
+                {
+                    for(int index = 0; index < a.length; index++)
+                        a[index] += b[index];
+                    return a;
+                })
+                .get();
+
+        int beaten = 0;
+        for(int index = 0; index < targets; index++)
+        {
+            beaten += marks[index];
+            ranks[best[index]] = beaten + 1;
+        }
+        return ranks;
+    }
+
+    /**
+     * Marks, for every word of one shard, the first (best) of some sorted targets that the word beats.
+     * @return How many words of the shard have each target as the first one they beat, with one more slot at the end
+     *         for the words that beat none of them.
+     */
+    private int[] marksOf(int shard, long[] sortedCounts, int[] sortedIds, int startYear, int endYear)
+    {
+        WordStore store = shards[shard];
+        int[] ids = globalIds[shard];
+        int[] marks = new int[sortedCounts.length + 1];
+        for(int local = 0; local < store.wordCount(); local++)
+        {
+            long count = store.getCount(local, startYear, endYear);
+            int low = 0;
+            int high = sortedCounts.length;
+            while(low < high)
+            {
+                int middle = (low + high) >>> 1;
+                if(RankingEngine.beats(count, ids[local], sortedCounts[middle], sortedIds[middle]))
+                    high = middle;
+                else
+                    low = middle + 1;
+            }
+            marks[low]++;
+        }
+        return marks;
+    }
+
+    /**
+     * Gets the total count of every word in overall rank order.
+     * @return A long array where index r holds the count of the word ranked r + 1.
+     */
+    @Override
+    public long[] getRankedCounts()
+    {
+        long[] ranking = new long[idsByOverallRank.length];
+        for(int rank = 0; rank < ranking.length; rank++)
+        {
+            int id = idsByOverallRank[rank];
+            ranking[rank] = shards[shardById[id]].getCount(localById[id]);
+        }
+        return ranking;
+    }
+
+    /**
+     * Gets the count of every word used in a given year period, highest first. The shards are counted in parallel.
+     * @param startYear the first year of the range of time desired.
+     * @param endYear the last year of the range of time desired.
+     * @return A long array where index r holds the count of the word ranked r + 1 in the range.
+     */
+    @Override
+    public long[] getRankedCounts(int startYear, int endYear)
+    {
+        long[] counts = IntStream.range(0, shards.length)
+                .parallel()
+                .mapToObj(shard -> IntStream.range(0, shards[shard].wordCount())
+                        .mapToLong(local -> shards[shard].getCount(local, startYear, endYear))
+                        .filter(count -> count != 0))
+                .flatMapToLong(shardCounts -> shardCounts)
+                .toArray();
+
+        return RankingEngine.sortHighestFirst(counts);
+    }
+
+    /**
+     * Gets the most common words over the entire data set.
+     * @param k how many words are wanted.
+     * @return A List of up to k words, most common first.
+     */
+    @Override
+    public List<String> topWords(int k)
+    {
+        return RankingEngine.topOfOrder(idsByOverallRank, k, id -> shards[shardById[id]].getCount(localById[id]),
+                this::wordOf);
+    }
+
+    /**
+     * Gets the most common words for a given year period. Every shard finds its own best k words in parallel, then the
+     * best k of those are picked.
+     * @param k how many words are wanted.
+     * @param startYear the first year of the range of time desired.
+     * @param endYear the last year of the range of time desired.
+     * @return A List of up to k words, most common first.
+     */
+    @Override
+    public List<String> topWords(int k, int startYear, int endYear)
+    {
+        int[] candidates = IntStream.range(0, shards.length)
+                .parallel()
+                .flatMap(shard -> Arrays.stream(rankingEngines[shard].topIds(k, startYear, endYear))
+                        .map(local -> globalIds[shard][local]))
+                .toArray();
+
+        // The candidates are put in id order first so that the stable sort by count breaks ties by id
+        Arrays.sort(candidates);
+        long[] totals = new long[candidates.length];
+        for(int index = 0; index < candidates.length; index++)
+            totals[index] = getCount(candidates[index], startYear, endYear);
+
+        List<String> top = new ArrayList<>();
+        for(int index : RankingEngine.orderByTotal(totals))
+        {
+            if(top.size() == k)
+                break;
+            top.add(wordOf(candidates[index]));
+        }
+        return top;
+    }
+
+    /**
+     * Finds the words whose rank changed the most between two year periods. The shards count each period in parallel,
+     * the counts are ranked once and then the two rankings are compared in parallel.
+     * @param aStart the first year of the first period.
+     * @param aEnd the last year of the first period.
+     * @param bStart the first year of the second period.
+     * @param bEnd the last year of the second period.
+     * @param k how many words are wanted in each direction.
+     * @return Up to k words that went up the most and up to k that went down the most.
+     */
+    @Override
+    public RankDelta rankDelta(int aStart, int aEnd, int bStart, int bEnd, int k)
+    {
+        return RankDelta.between(RankingEngine.ranksOfUsed(rangeTotals(aStart, aEnd)),
+                RankingEngine.ranksOfUsed(rangeTotals(bStart, bEnd)), k, this::wordOf);
+    }
+
+    /**
+     * Counts every word in a year period, each shard on its own thread.
+     * @return The count of each word by its id across every shard.
+     */
+    private long[] rangeTotals(int startYear, int endYear)
+    {
+        long[] totals = new long[shardById.length];
+        IntStream.range(0, shards.length).parallel().forEach(shard ->
+        {
+            for(int local = 0; local < shards[shard].wordCount(); local++)
+                totals[globalIds[shard][local]] = shards[shard].getCount(local, startYear, endYear);
+        });
+        return totals;
+    }
+
+    /**
+     * Gets the number of times a word appeared for the entire data set.
+     * @param word the word to be looked up
+     * @return A long-integer representing the number of occurrences of the word.
+     */
+    @Override
+    public long getCountFor(String word)
+    {
+        long start = System.nanoTime();
+        String lowerCase = word.toLowerCase();
+        int shard = shardOf(lowerCase);
+        int local = shards[shard].idOf(lowerCase);
+        long count = local < 0 ? 0 : shards[shard].getCount(local);
+        stats.record(WordDataStats.Query.COUNT, start);
+        return count;
+    }
+
+    /**
+     * Gets the count of a word for a given single year.
+     * @param word the word to be looked up.
+     * @param year the year to be considered.
+     * @return A long-integer representing the number of occurrences of the word in the specified year.
+     */
+    @Override
+    public long getCountFor(String word, int year)
+    {
+        long start = System.nanoTime();
+        String lowerCase = word.toLowerCase();
+        int shard = shardOf(lowerCase);
+        int local = shards[shard].idOf(lowerCase);
+        long count = local < 0 ? 0 : shards[shard].getCount(local, year);
+        stats.record(WordDataStats.Query.COUNT_YEAR, start);
+        return count;
+    }
+
+    /**
+     * Gets the number of times a word appeared for the given year range.
+     * @param word the word to be looked up
+     * @param startYear the first year of the range of time desired
+     * @param endYear the last year of the range of time desired
+     * @return A long-integer representing the number of occurrences of the word in the specified time period.
+     */
+    @Override
+    public long getCountFor(String word, int startYear, int endYear)
+    {
+        long start = System.nanoTime();
+        String lowerCase = word.toLowerCase();
+        int shard = shardOf(lowerCase);
+        int local = shards[shard].idOf(lowerCase);
+        long count = local < 0 ? 0 : shards[shard].getCount(local, startYear, endYear);
+        stats.record(WordDataStats.Query.COUNT_RANGE, start);
+        return count;
+    }
+
+    /**
+     * Gets the count of a word in every year of a range from the shard that owns it, without allocating.
+     * @param word the word to be looked up.
+     * @param startYear the first year of the range of time desired.
+     * @param endYear the last year of the range of time desired.
+     * @param out gets the count of year y at out[y - startYear].
+     */
+    @Override
+    public void getSeries(String word, int startYear, int endYear, long[] out)
+    {
+        int years = WordData.seriesLength(startYear, endYear, 1, out);
+        fillSeries(word, startYear, endYear, out, 0, years);
+    }
+
+    /**
+     * Gets the count of several words in every year of a range, one word's series after another, without allocating.
+     * @param words the words to be looked up.
+     * @param startYear the first year of the range of time desired.
+     * @param endYear the last year of the range of time desired.
+     * @param out gets the count of words[w] in year y at out[w * (endYear - startYear + 1) + y - startYear].
+     */
+    @Override
+    public void getSeries(String[] words, int startYear, int endYear, long[] out)
+    {
+        int years = WordData.seriesLength(startYear, endYear, words.length, out);
+        for(int index = 0; index < words.length; index++)
+            fillSeries(words[index], startYear, endYear, out, index * years, years);
+    }
+
+    /**
+     * Writes the series of one word, all zeros if the word wasn't read in.
+     */
+    private void fillSeries(String word, int startYear, int endYear, long[] out, int offset, int years)
+    {
+        String lowerCase = word.toLowerCase();
+        int shard = shardOf(lowerCase);
+        int local = shards[shard].idOf(lowerCase);
+        if(local < 0)
+            Arrays.fill(out, offset, offset + years, 0);
+        else
+            shards[shard].fillSeries(local, startYear, endYear, out, offset);
+    }
+
+    /**
+     * Gets every word that starts with some letters from the prefix index, so only the words that match are looked at.
+     * @param prefix the letters the words start with, in any case.
+     * @return The words that start with prefix, in alphabetical order.
+     */
+    @Override
+    public List<String> wordsWithPrefix(String prefix)
+    {
+        List<String> matches = new ArrayList<>();
+        for(int id : prefixIndex.idsWithPrefix(prefix.toLowerCase()))
+            matches.add(wordOf(id));
+        return matches;
+    }
+
+    /**
+     * Gets the number of times all of the words starting with some letters appeared for the given year range, counting
+     * each word in the shard that owns it.
+     * @param prefix the letters the words start with, in any case.
+     * @param startYear the first year of the range of time desired.
+     * @param endYear the last year of the range of time desired.
+     * @return The total number of occurrences of the words in the range.
+     */
+    @Override
+    public long getPrefixCount(String prefix, int startYear, int endYear)
+    {
+        long total = 0;
+        for(int id : prefixIndex.idsWithPrefix(prefix.toLowerCase()))
+            total += getCount(id, startYear, endYear);
+        return total;
+    }
+
+    /**
+     * Writes the load phase times, query latencies and an estimate of the memory held, for the stats command.
+     * @param out where the statistics are written.
+     * @param json true for one line of JSON, false for a report.
+     */
+    void writeStats(PrintWriter out, boolean json)
+    {
+        // The parts of every shard are added up, so the report has the same parts as a WordDataImpl
+        Map<String, Long> memory = new LinkedHashMap<>();
+        long lines = 0;
+        for(WordStore shard : shards)
+        {
+            shard.estimateBytes().forEach((part, bytes) -> memory.merge(part, bytes, Long::sum));
+            lines += shard.lineCount();
+        }
+        memory.put("overall ranks", 2 * WordDataStats.arrayBytes(shardById.length, Integer.BYTES));
+        // shardById, localById and every shard's globalIds hold one int for each word
+        memory.put("shard ids", 3 * WordDataStats.arrayBytes(shardById.length, Integer.BYTES));
+        memory.put("prefix index", prefixIndex.estimateBytes());
+
+        Map<String, Long> counters = new LinkedHashMap<>();
+        counters.put("words", (long)shardById.length);
+        counters.put("lines", lines);
+        counters.put("shards", (long)shards.length);
+
+        if(json)
+            stats.writeJson(out, memory, counters);
+        else
+            stats.writeReport(out, memory, counters);
+    }
+
+    /**
+     * Gets the number of shards the words are split into.
+     * @return The number of shards.
+     */
+    int getShardCount()
+    {
+        return shards.length;
+    }
+
+    /**
+     * Gets the id across every shard of a word.
+     * @param lowerCase the word, in lower case.
+     * @return The id of the word, or -1 if it wasn't read in.
+     */
+    private int idOf(String lowerCase)
+    {
+        int shard = shardOf(lowerCase);
+        int local = shards[shard].idOf(lowerCase);
+        return local < 0 ? -1 : globalIds[shard][local];
+    }
+
+    /**
+     * Gets a word by its id across every shard.
+     */
+    private String wordOf(int id)
+    {
+        return shards[shardById[id]].wordOf(localById[id]);
+    }
+
+    /**
+     * Gets the count of a word by its id across every shard.
+     */
+    private long getCount(int id, int startYear, int endYear)
+    {
+        return shards[shardById[id]].getCount(localById[id], startYear, endYear);
+    }
+
+    /**
+     * Scatters a count of the words which beat a target word to every shard and gathers the results.
+     */
+    private class Gather extends RecursiveTask<Integer>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private long targetCount;
+        private int targetId;
+        private int startYear;
+        private int endYear;
+
+        Gather(long targetCount, int targetId, int startYear, int endYear)
+        {
+            this.targetCount = targetCount;
+            this.targetId = targetId;
+            this.startYear = startYear;
+            this.endYear = endYear;
+        }
+
+        @Override
+        protected Integer compute()
+        {
+            List<Scan> scans = new ArrayList<>(shards.length);
+            for(int shard = 0; shard < shards.length; shard++)
+                scans.add(new Scan(this, shard, 0, shards[shard].wordCount()));
+            ForkJoinTask.invokeAll(scans);
+
+            int beaten = 0;
+            for(Scan scan : scans)
+                beaten += scan.join();
+            return beaten;
+        }
+    }
+
+    /**
+     * Counts the words of part of one shard which beat a target word. Big parts are split in half and counted in
+     * parallel.
+     */
+    private class Scan extends RecursiveTask<Integer>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private Gather query;
+        private int shard;
+        private int from;
+        private int to;
+
+        Scan(Gather query, int shard, int from, int to)
+        {
+            this.query = query;
+            this.shard = shard;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Integer compute()
+        {
+            if(to - from > SPLIT_SIZE)
+            {
+                int middle = (from + to) >>> 1;
+                Scan left = new Scan(query, shard, from, middle);
+                left.fork();
+                int right = new Scan(query, shard, middle, to).compute();
+                return right + left.join();
+            }
+
+            WordStore store = shards[shard];
+            int[] ids = globalIds[shard];
+            int beaten = 0;
+            for(int local = from; local < to; local++)
+            {
+                if(RankingEngine.beats(store.getCount(local, query.startYear, query.endYear), ids[local],
+                        query.targetCount, query.targetId))
+                    beaten++;
+            }
+            return beaten;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A SpaceSaving finds the most common words in a stream while only keeping a fixed number of them (the Space-Saving
+ * algorithm of Metwally, Agrawal and El Abbadi). While there is room every word is kept with its exact count. Once it is
+ * full, a word that isn't kept takes the place of the kept word with the lowest count, and starts from that count. So
+ * a kept word's count is never too low, and it is too high by at most the count it started from.
+ * <br>
+ * Any word used more than total / capacity times is always kept. The kept words are in a min-heap on their counts so
+ * the one to replace is always at the top.
+ *
+ * @author Kevin Becker
+ */
+class SpaceSaving
+{
+    private int capacity;
+    private Map<String, Integer> slotOfWord;
+    // The word and count in each slot
+    private String[] words;
+    private long[] counts;
+    // heap[0] is the slot with the lowest count, heapIndex[slot] is where a slot is in the heap
+    private int[] heap;
+    private int[] heapIndex;
+    private int size = 0;
+
+    /**
+     * Constructs a new, empty SpaceSaving.
+     * @param capacity the most words that are kept.
+     */
+    SpaceSaving(int capacity)
+    {
+        if(capacity < 1)
+            throw new IllegalArgumentException("At least one word has to be kept");
+        this.capacity = capacity;
+        this.slotOfWord = new HashMap<>();
+        this.words = new String[capacity];
+        this.counts = new long[capacity];
+        this.heap = new int[capacity];
+        this.heapIndex = new int[capacity];
+    }
+
+    /**
+     * Adds to the count of a word.
+     * @param word the word.
+     * @param count how much to add, which must not be negative.
+     */
+    void add(String word, long count)
+    {
+        Integer slot = slotOfWord.get(word);
+        if(slot != null)
+        {
+            counts[slot] += count;
+            siftDown(heapIndex[slot]);
+            return;
+        }
+
+        if(size < capacity)
+        {
+            int added = size++;
+            slotOfWord.put(word, added);
+            words[added] = word;
+            counts[added] = count;
+            heap[added] = added;
+            heapIndex[added] = added;
+            siftUp(added);
+            return;
+        }
+
+        // The word takes over the slot with the lowest count
+        int replaced = heap[0];
+        slotOfWord.remove(words[replaced]);
+        slotOfWord.put(word, replaced);
+        words[replaced] = word;
+        counts[replaced] += count;
+        siftDown(0);
+    }
+
+    /**
+     * Gets the words being kept, highest count first.
+     * @return A List of every kept word.
+     */
+    List<String> wordsByCount()
+    {
+        Integer[] slots = new Integer[size];
+        for(int slot = 0; slot < size; slot++)
+            slots[slot] = slot;
+        Arrays.sort(slots, (a, b) -> counts[a] != counts[b] ? Long.compare(counts[b], counts[a])
+                : words[a].compareTo(words[b]));
+
+        List<String> kept = new ArrayList<>(size);
+        for(int slot : slots)
+            kept.add(words[slot]);
+        return kept;
+    }
+
+    /**
+     * Gets the most a word can have been used, whether it is kept or not. A word that isn't kept can't have been used
+     * more than the lowest kept count, or it would have taken that word's place, and while there is still room every
+     * word is kept.
+     * @param word the word.
+     * @return The word's count if it is kept, otherwise the most its true count can be.
+     */
+    long upperBound(String word)
+    {
+        Integer slot = slotOfWord.get(word);
+        if(slot != null)
+            return counts[slot];
+        return size < capacity ? 0 : counts[heap[0]];
+    }
+
+    /**
+     * @return The number of words being kept.
+     */
+    int size()
+    {
+        return size;
+    }
+
+    /**
+     * Estimates the bytes held on the heap, not counting the words themselves, which are shared with the parsed blocks
+     * while loading.
+     * @return The estimated size in bytes.
+     */
+    long estimateBytes()
+    {
+        // A HashMap entry, its table slot and the boxed slot number
+        long mapBytes = (long)capacity * (32 + 8 + 16);
+        return mapBytes + WordDataStats.arrayBytes(capacity, 8) + WordDataStats.arrayBytes(capacity, Long.BYTES)
+                + 2 * WordDataStats.arrayBytes(capacity, Integer.BYTES);
+    }
+
+    private void siftUp(int index)
+    {
+        while(index > 0)
+        {
+            int parent = (index - 1) / 2;
+            if(counts[heap[parent]] <= counts[heap[index]])
+                return;
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index)
+    {
+        while(true)
+        {
+            int smallest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if(left < size && counts[heap[left]] < counts[heap[smallest]])
+                smallest = left;
+            if(right < size && counts[heap[right]] < counts[heap[smallest]])
+                smallest = right;
+            if(smallest == index)
+                return;
+            swap(index, smallest);
+            index = smallest;
+        }
+    }
+
+    private void swap(int a, int b)
+    {
+        int slot = heap[a];
+        heap[a] = heap[b];
+        heap[b] = slot;
+        heapIndex[heap[a]] = a;
+        heapIndex[heap[b]] = b;
+    }
+}
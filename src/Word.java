@@ -1,41 +1,24 @@
-import java.util.HashMap;
-import java.util.Map;
-
 /**
- * The Word class is an extension for the WordData class. It houses a word and each year's data.
+ * The Word class is an extension for the WordData class. It is a lightweight view of one word in a WordStore, all of
+ * the word's year data lives in the store's columns and is looked up by the word's id.
  *
  * @author Kevin Becker
  */
 
 public class Word
 {
-    private Map<Integer, Long> years = new HashMap<>();
-    private String word;
+    private WordStore store;
+    private int id;
 
     /**
      * Constructs a new Word object.
-     * @param word A String which is the word.
+     * @param store The WordStore that holds the word's data.
+     * @param id The id of the word in the store.
      */
-    Word(String word)
+    Word(WordStore store, int id)
     {
-        this.word = word;
-    }
-
-    /**
-     * Adds data for a given year that the word has data for.
-     * @param year The year which the word was found.
-     * @param numberOfOccurrencesOfWord The number of occurrences of the word in year
-     * @return true or false; true if the data was added, false if the year already has data.
-     */
-    boolean addDataForYear(int year, long numberOfOccurrencesOfWord)
-    {
-        // If there already is data for the year, return false
-        if(years.containsKey(year))
-            return false;
-
-        // Otherwise we can put this and return true
-        years.put(year, numberOfOccurrencesOfWord);
-        return true;
+        this.store = store;
+        this.id = id;
     }
 
     /**
@@ -44,13 +27,7 @@ public class Word
      */
     long getCount()
     {
-        long totalOccurrences = 0;
-
-        // Performs a foreach loop on each entry summing the total number of occurrences of word
-        for(Map.Entry<Integer, Long> entry : years.entrySet())
-            totalOccurrences += entry.getValue();
-
-        return totalOccurrences;
+        return store.getCount(id);
     }
 
     /**
@@ -60,7 +37,7 @@ public class Word
      */
     long getCount(int year)
     {
-        return years.containsKey(year) ? years.get(year) : 0;
+        return store.getCount(id, year);
     }
 
     /**
@@ -71,19 +48,7 @@ public class Word
      */
     long getCount(int startYear, int endYear)
     {
-        long totalOccurrences = 0;
-
-        // Loops through each year in the specified range and sums the occurrences of word
-        for(int year = startYear; year <= endYear; year++)
-        {
-            // If there is a data-point for the year
-            if(years.containsKey(year))
-            {
-                totalOccurrences += years.get(year);
-            }
-        }
-
-        return totalOccurrences;
+        return store.getCount(id, startYear, endYear);
     }
 
     /**
@@ -93,18 +58,35 @@ public class Word
     @Override
     public String toString()
     {
-        String toString = "";
+        // Adding to a String over and over copies everything before it every time, a StringBuilder doesn't
+        StringBuilder toString = new StringBuilder();
+        String word = getWord();
 
-        for(Map.Entry<Integer,Long> year : years.entrySet())
+        for(int line = store.firstLine(id); line < store.endLine(id); line++)
         {
-            toString += "word='"+ this.word + "', count=" + year.getValue() + ", year=" + year.getKey() + "\n";
+            toString.append("word='").append(word).append("', count=").append(store.countOf(line))
+                    .append(", year=").append(store.yearOf(line)).append('\n');
         }
 
-        return toString;
+        return toString.toString();
+    }
+
+    /**
+     * Gets the id of the word, which is the order it was read in. This is used to break ties between words which
+     * have the same number of occurrences so that ranks are always the same from run to run.
+     * @return The id of the word.
+     */
+    int getId()
+    {
+        return id;
     }
 
-    /*
-     * Accessors are not needed for this class. The only operations that need to be done with the fields are completed
-     * with the methods.
+    /**
+     * Gets the word itself.
+     * @return The String of the word.
      */
+    String getWord()
+    {
+        return store.wordOf(id);
+    }
 }
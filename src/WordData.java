@@ -1,5 +1,9 @@
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
+import java.util.PriorityQueue;
 
 /**
  * An interface of useful functions for handling data about word use
@@ -119,4 +123,295 @@ public interface WordData {
      */
     public long getCountFor( String word, int startYear, int endYear );
 
+    /**
+     * How far off can a count be? Implementations that keep the data
+     * itself are exact, which is what the default says, but one that
+     * only keeps an estimate (see ApproximateWordData) can give a count
+     * that is too high by up to this much.
+     * @param word the word that was looked up
+     * @param startYear the first year of the range of time desired
+     * @param endYear the last year of the range of time desired
+     * @return the most the 3-parameter count for the same arguments can
+     *         be above the true count, 0 if it is exact
+     */
+    public default long getCountErrorBound(
+            String word, int startYear, int endYear ) {
+        return 0;
+    }
+
+    /**
+     * Get the number of times each of several words was used during a
+     * given time period.
+     * The default implementation just calls the 3-parameter method for
+     * each word, but classes can override this to share work between
+     * the words.
+     * @param words the words to be looked up
+     * @param startYear the first year of the range of time desired
+     * @param endYear the last year of the range of time desired
+     * @return the number of times each word was used over the given range
+     *         of years, inclusive, in the same order as words
+     */
+    public default long[] getCountsFor(
+            Collection< String > words, int startYear, int endYear ) {
+        long[] counts = new long[ words.size() ];
+        int index = 0;
+        for ( String word: words ) {
+            counts[ index++ ] = this.getCountFor( word, startYear, endYear );
+        }
+        return counts;
+    }
+
+    /**
+     * Get the number of times a word was used in each year of a time
+     * period, written into an array the caller supplies so that nothing
+     * has to be allocated.
+     * The default implementation just calls the 2-parameter method for
+     * each year, but classes can override this to go through the word's
+     * data once.
+     * @param word the word to be looked up
+     * @param startYear the first year of the range of time desired
+     * @param endYear the last year of the range of time desired
+     * @param out gets the count of year y at out[ y - startYear ] (0 for
+     *            a year with no data); it must have room for every year
+     * @throws IllegalArgumentException if out is too small
+     */
+    public default void getSeries(
+            String word, int startYear, int endYear, long[] out ) {
+        int years = seriesLength( startYear, endYear, 1, out );
+        for ( int y = 0; y < years; ++y ) {
+            out[ y ] = this.getCountFor( word, startYear + y );
+        }
+    }
+
+    /**
+     * Get the number of times each of several words was used in each year
+     * of a time period, written into one array the caller supplies.
+     * The words' series are laid out one after another.
+     * The default implementation just calls the 4-parameter method for
+     * each word.
+     * @param words the words to be looked up
+     * @param startYear the first year of the range of time desired
+     * @param endYear the last year of the range of time desired
+     * @param out gets the count of words[ w ] in year y at
+     *            out[ w * ( endYear - startYear + 1 ) + y - startYear ];
+     *            it must have room for every word and year
+     * @throws IllegalArgumentException if out is too small
+     */
+    public default void getSeries(
+            String[] words, int startYear, int endYear, long[] out ) {
+        int years = seriesLength( startYear, endYear, words.length, out );
+        long[] one = ( words.length == 1 ) ? out : new long[ years ];
+        for ( int w = 0; w < words.length; ++w ) {
+            this.getSeries( words[ w ], startYear, endYear, one );
+            if ( one != out ) {
+                System.arraycopy( one, 0, out, w * years, years );
+            }
+        }
+    }
+
+    /**
+     * Check that a series array has room for some number of words over a
+     * time period.
+     * @param startYear the first year of the range of time desired
+     * @param endYear the last year of the range of time desired
+     * @param words how many words the series are for
+     * @param out the array the series go in
+     * @return the number of years in the period (0 if it is empty)
+     * @throws IllegalArgumentException if out is too small
+     */
+    static int seriesLength(
+            int startYear, int endYear, int words, long[] out ) {
+        long years = Math.max( 0L, (long)endYear - startYear + 1 );
+        if ( years * words > out.length ) {
+            throw new IllegalArgumentException(
+                    "A series of " + words + " word(s) over " + years +
+                    " years does not fit in " + out.length + " counts" );
+        }
+        return (int)years;
+    }
+
+    /**
+     * Get the rank of each of several words over a given time period.
+     * Most common word gets a rank of 1.
+     * The default implementation just calls the 3-parameter method for
+     * each word, but classes can override this to rank all the words
+     * with a single pass over the data.
+     * @param words the words to be looked up
+     * @param startYear the first year of the range of time desired
+     * @param endYear the last year of the range of time desired
+     * @return the ordinal rank of each word over the given range of
+     *         years, inclusive, or {@link WordData#UNRANKED} for a word
+     *         that is not in the data for those years, in the same order
+     *         as words
+     */
+    public default int[] getRanksFor(
+            Collection< String > words, int startYear, int endYear ) {
+        int[] ranks = new int[ words.size() ];
+        int index = 0;
+        for ( String word: words ) {
+            ranks[ index++ ] = this.getRankFor( word, startYear, endYear );
+        }
+        return ranks;
+    }
+
+    /**
+     * Find the words whose rank changed the most from one time period
+     * to another. Only words used in both periods are considered.
+     * The default implementation ranks every word of {@link #words()}
+     * in each period with the 3-parameter ranks method, but classes
+     * can override this to rank the whole vocabulary once per period.
+     * @param aStart the first year of the first period
+     * @param aEnd the last year of the first period
+     * @param bStart the first year of the second period
+     * @param bEnd the last year of the second period
+     * @param k how many words are wanted in each direction
+     * @return up to k words that went up the most and up to k that went
+     *         down the most, biggest move first; equal moves are in the
+     *         order {@link #words()} gives
+     */
+    public default RankDelta rankDelta(
+            int aStart, int aEnd, int bStart, int bEnd, int k ) {
+        List< String > all = new ArrayList<>( this.words() );
+        return RankDelta.between(
+                this.getRanksFor( all, aStart, aEnd ),
+                this.getRanksFor( all, bStart, bEnd ), k, all::get );
+    }
+
+    /**
+     * Get the total count of every word, in order of overall rank.
+     * The default implementation looks up the rank and count of every
+     * word, but classes that already know the ranking can override this.
+     * @return an array where element <i>r</i> is the number of times the
+     *         word of rank <i>r</i> + 1 was used
+     */
+    public default long[] getRankedCounts() {
+        long[] ranking = new long[ this.words().size() ];
+        for ( String word: this.words() ) {
+            ranking[ this.getRankFor( word ) - 1 ] = this.getCountFor( word );
+        }
+        return ranking;
+    }
+
+    /**
+     * Get the count of every word used during a given time period, in
+     * order of rank for that period. Words that were not used during
+     * the period are left out.
+     * @param startYear the first year of the range of time desired
+     * @param endYear the last year of the range of time desired
+     * @return an array where element <i>r</i> is the number of times the
+     *         word of rank <i>r</i> + 1 was used over the given range of
+     *         years, inclusive
+     */
+    public default long[] getRankedCounts( int startYear, int endYear ) {
+        long[] counts = this.getCountsFor( this.words(), startYear, endYear );
+        Arrays.sort( counts );
+        // Sorted lowest first, so the used words are reversed onto the front
+        int zeros = 0;
+        while ( zeros < counts.length && counts[ zeros ] == 0 ) {
+            ++zeros;
+        }
+        long[] ranking = new long[ counts.length - zeros ];
+        for ( int r = 0; r < ranking.length; ++r ) {
+            ranking[ r ] = counts[ counts.length - 1 - r ];
+        }
+        return ranking;
+    }
+
+    /**
+     * Get the most common words considering all years in the data.
+     * The default implementation just calls the 3-parameter method
+     * with the widest possible range of years.
+     * @param k how many words are wanted
+     * @return up to k words, most common first
+     */
+    public default List< String > topWords( int k ) {
+        return this.topWords( k, Integer.MIN_VALUE, Integer.MAX_VALUE );
+    }
+
+    /**
+     * Get the most common words during a given time period. Words
+     * that were not used during the period are never included.
+     * The default implementation keeps the best k words seen so far in
+     * a heap while calling the 3-parameter count method for every word,
+     * but classes can override this to avoid the per-word lookups.
+     * @param k how many words are wanted
+     * @param startYear the first year of the range of time desired
+     * @param endYear the last year of the range of time desired
+     * @return up to k words, most common first; words used the same
+     *         number of times are in the order {@link #words()} gives
+     */
+    public default List< String > topWords( int k, int startYear, int endYear ) {
+        if ( k <= 0 ) {
+            return new ArrayList<>();
+        }
+        // The heap can never hold more than every word, so a huge k
+        // doesn't make a huge (or negative) capacity
+        k = Math.min( k, this.words().size() );
+        // A word kept so far, with where it came in words()
+        record Kept( String word, long count, int seen ) {}
+        // The heap's head is the worst word kept so far: the lowest count,
+        // and the latest seen among equal counts.
+        PriorityQueue< Kept > best = new PriorityQueue<>(
+                k + 1,
+                ( a, b ) -> a.count() == b.count() ?
+                        Integer.compare( b.seen(), a.seen() ) :
+                        Long.compare( a.count(), b.count() )
+        );
+        int seen = 0;
+        for ( String word: this.words() ) {
+            long count = this.getCountFor( word, startYear, endYear );
+            if ( count > 0 ) {
+                best.add( new Kept( word, count, seen ) );
+                if ( best.size() > k ) {
+                    best.poll();
+                }
+            }
+            ++seen;
+        }
+        String[] top = new String[ best.size() ];
+        for ( int i = top.length - 1; i >= 0; --i ) {
+            top[ i ] = best.poll().word();
+        }
+        return new ArrayList<>( List.of( top ) );
+    }
+
+    /**
+     * Get every word that starts with some letters, ignoring case.
+     * The default implementation checks every word, but classes can
+     * override this to only look at the words that match.
+     * @param prefix the letters the words start with
+     * @return the words that start with prefix, in alphabetical order
+     */
+    public default List< String > wordsWithPrefix( String prefix ) {
+        String lowerCase = prefix.toLowerCase();
+        List< String > matches = new ArrayList<>();
+        for ( String word: this.words() ) {
+            if ( word.startsWith( lowerCase ) ) {
+                matches.add( word );
+            }
+        }
+        matches.sort( null );
+        return matches;
+    }
+
+    /**
+     * Get the number of times all of the words starting with some letters
+     * were used during a given time period.
+     * The default implementation adds up the 3-parameter count of every
+     * word {@link #wordsWithPrefix(String)} gives.
+     * @param prefix the letters the words start with
+     * @param startYear the first year of the range of time desired
+     * @param endYear the last year of the range of time desired
+     * @return the total number of times the words were used over the
+     *         given range of years, inclusive
+     */
+    public default long getPrefixCount(
+            String prefix, int startYear, int endYear ) {
+        long total = 0;
+        for ( String word: this.wordsWithPrefix( prefix ) ) {
+            total += this.getCountFor( word, startYear, endYear );
+        }
+        return total;
+    }
+
 }
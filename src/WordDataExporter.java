@@ -0,0 +1,270 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A WordDataExporter writes every line of a set of words to a channel through one large buffer. The lines are put
+ * straight into the buffer from a WordStore's columns, so no String is built for a line or a word and the buffer is
+ * only written out when it is full.
+ * <br>
+ * There are three formats:
+ * <ul>
+ *     <li>TEXT is what dumpData has always printed: word='<em>word</em>', count=<em>count</em>, year=<em>year</em></li>
+ *     <li>CSV is the 1-gram format (word, year, count), so an export can be read back in</li>
+ *     <li>BINARY is the bytes "WFEXPRT1" and then, for each word, the length of its UTF-8 bytes, the bytes, its number
+ *     of lines and each line's year and count (ints and longs, little endian)</li>
+ * </ul>
+ * Whatever the order of the words, each word's lines are written in year order, so an export of the same data always
+ * comes out the same.
+ *
+ * @author Kevin Becker
+ */
+class WordDataExporter
+{
+    // The bytes every binary export starts with
+    static final byte[] BINARY_MAGIC = "WFEXPRT1".getBytes(StandardCharsets.US_ASCII);
+    private static final int BUFFER_SIZE = 1 << 20;
+    // The most bytes a long can take when it is written out in decimal
+    private static final int MAX_DIGITS = 20;
+
+    private static final byte[] TEXT_WORD = "word='".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TEXT_COUNT = "', count=".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TEXT_YEAR = ", year=".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CSV_SEPARATOR = ", ".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The ways an export can be written.
+     */
+    enum Format
+    {
+        TEXT, CSV, BINARY
+    }
+
+    /**
+     * The orders the words can be written in.
+     */
+    enum Order
+    {
+        // The order the words were read in
+        LOADED,
+        // Alphabetical order
+        WORD,
+        // Overall rank, most common first
+        RANK
+    }
+
+    /**
+     * A Source is a WordData that can hand every one of its words to an exporter.
+     */
+    interface Source
+    {
+        /**
+         * Writes every word to an exporter. The exporter is not flushed.
+         * @param exporter where the words are written.
+         * @param order the order the words are written in.
+         * @throws IOException if the words cannot be written.
+         */
+        void export(WordDataExporter exporter, Order order) throws IOException;
+    }
+
+    private WritableByteChannel channel;
+    private Format format;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    // The UTF-8 bytes of the word being written
+    private byte[] wordBytes = new byte[64];
+    private int wordLength = 0;
+    // The digits of a number are worked out backwards into here
+    private byte[] digits = new byte[MAX_DIGITS];
+
+    private long wordsWritten = 0;
+    private long linesWritten = 0;
+
+    /**
+     * Constructs a new WordDataExporter. The channel belongs to the caller, it is never closed here.
+     * @param channel where the export is written.
+     * @param format the format of the export.
+     * @throws IOException if a binary export's header cannot be written.
+     */
+    WordDataExporter(WritableByteChannel channel, Format format) throws IOException
+    {
+        this.channel = channel;
+        this.format = format;
+        if(format == Format.BINARY)
+            buffer.put(BINARY_MAGIC);
+    }
+
+    /**
+     * Prints every word of a WordData to System.out the way dumpData always has, in the order they were read in.
+     * @param source the words to be printed.
+     */
+    static void dump(Source source)
+    {
+        // System.out is flushed first, otherwise something printed before this could come out after it
+        System.out.flush();
+        try
+        {
+            WordDataExporter exporter = new WordDataExporter(Channels.newChannel(System.out), Format.TEXT);
+            source.export(exporter, Order.LOADED);
+            exporter.flush();
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes every line of a word.
+     * @param store the WordStore that holds the word.
+     * @param id the id of the word in the store.
+     * @throws IOException if the buffer cannot be written out.
+     */
+    void write(WordStore store, int id) throws IOException
+    {
+        encodeWord(store.wordOf(id));
+        int firstLine = store.firstLine(id);
+        int endLine = store.endLine(id);
+
+        switch(format)
+        {
+            case BINARY:
+                ensureRoom(2 * Integer.BYTES + wordLength);
+                buffer.putInt(wordLength);
+                buffer.put(wordBytes, 0, wordLength);
+                buffer.putInt(endLine - firstLine);
+                for(int line = firstLine; line < endLine; line++)
+                {
+                    ensureRoom(Integer.BYTES + Long.BYTES);
+                    buffer.putInt(store.yearOf(line));
+                    buffer.putLong(store.countOf(line));
+                }
+                break;
+
+            case CSV:
+                for(int line = firstLine; line < endLine; line++)
+                {
+                    ensureRoom(wordLength + 2 * (CSV_SEPARATOR.length + MAX_DIGITS) + 1);
+                    buffer.put(wordBytes, 0, wordLength);
+                    buffer.put(CSV_SEPARATOR);
+                    putNumber(store.yearOf(line));
+                    buffer.put(CSV_SEPARATOR);
+                    putNumber(store.countOf(line));
+                    buffer.put((byte)'\n');
+                }
+                break;
+
+            default:
+                for(int line = firstLine; line < endLine; line++)
+                {
+                    ensureRoom(TEXT_WORD.length + wordLength + TEXT_COUNT.length + TEXT_YEAR.length
+                            + 2 * MAX_DIGITS + 1);
+                    buffer.put(TEXT_WORD);
+                    buffer.put(wordBytes, 0, wordLength);
+                    buffer.put(TEXT_COUNT);
+                    putNumber(store.countOf(line));
+                    buffer.put(TEXT_YEAR);
+                    putNumber(store.yearOf(line));
+                    buffer.put((byte)'\n');
+                }
+        }
+
+        wordsWritten++;
+        linesWritten += endLine - firstLine;
+    }
+
+    /**
+     * Writes out whatever is in the buffer.
+     * @throws IOException if it cannot be written.
+     */
+    void flush() throws IOException
+    {
+        buffer.flip();
+        while(buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * @return The number of words written so far.
+     */
+    long getWordsWritten()
+    {
+        return wordsWritten;
+    }
+
+    /**
+     * @return The number of lines written so far.
+     */
+    long getLinesWritten()
+    {
+        return linesWritten;
+    }
+
+    /**
+     * Makes sure there is room in the buffer for some bytes, writing it out (or making it bigger, for a really long
+     * word) if there isn't.
+     */
+    private void ensureRoom(int bytes) throws IOException
+    {
+        if(buffer.remaining() >= bytes)
+            return;
+
+        flush();
+        if(buffer.capacity() < bytes)
+            buffer = ByteBuffer.allocateDirect(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Gets the UTF-8 bytes of a word into wordBytes. Plain ASCII words are copied a character at a time, so they don't
+     * need a new array.
+     */
+    private void encodeWord(String word)
+    {
+        int length = word.length();
+        if(length > wordBytes.length)
+            wordBytes = new byte[Math.max(length, wordBytes.length * 2)];
+
+        for(int index = 0; index < length; index++)
+        {
+            char c = word.charAt(index);
+            if(c >= 0x80)
+            {
+                wordBytes = word.getBytes(StandardCharsets.UTF_8);
+                wordLength = wordBytes.length;
+                return;
+            }
+            wordBytes[index] = (byte)c;
+        }
+        wordLength = length;
+    }
+
+    /**
+     * Puts a number into the buffer in decimal. There must already be room for it.
+     */
+    private void putNumber(long number)
+    {
+        if(number == Long.MIN_VALUE)
+        {
+            buffer.put(Long.toString(number).getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+
+        long rest = Math.abs(number);
+        int start = MAX_DIGITS;
+        do
+        {
+            digits[--start] = (byte)('0' + rest % 10);
+            rest /= 10;
+        }
+        while(rest > 0);
+
+        if(number < 0)
+            buffer.put((byte)'-');
+        buffer.put(digits, start, MAX_DIGITS - start);
+    }
+}
@@ -1,89 +1,243 @@
 import java.util.*;
-import java.util.stream.Collectors;
-import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * An implementation of WordData that assumes that the data are stored in files in Google's 1-gram format (word, year, count)
  *
  * @author Kevin Becker
  */
-public class WordDataImpl implements WordData
+public class WordDataImpl implements WordData, WordDataExporter.Source
 {
 
-    private Map<String, Word> words = new HashMap<>();
-    private List<String> overallRanks= new ArrayList<>();
-    private Collection<String> wordsReadIn = new ArrayList<>();
+    // Every word gets an id, all of the year data is kept in flat arrays indexed by those ids
+    private WordStore store;
+    // The overall ranks and the prefix index are built in the background once the store is ready, so counts can be
+    // answered straight away. Anything that needs one of them waits for just that one.
+    private CompletableFuture<OverallRanks> overallRanks;
     private long totalWords = 0;
+    private RankingEngine rankingEngine;
+    // The complete rankings of recently queried year ranges
+    private RankCache rankCache;
+    // The words in alphabetical order, for finding every word that starts with some letters
+    private CompletableFuture<PrefixIndex> prefixIndex;
+    // Load phase times and query latencies
+    private WordDataStats stats = new WordDataStats();
 
     /**
-     * Read 1-gram data from a file into an internal data structure for further processing.
-     * @param fileName the name of the 1-gram data file.
+     * The overall rank of every word, both ways around.
+     */
+    private static class OverallRanks
+    {
+        // idsByRank[rank - 1] is the id of the word with that overall rank
+        int[] idsByRank;
+        // rankById[id] is the overall rank of the word with that id, this saves searching for it
+        int[] rankById;
+    }
+
+    /**
+     * Read 1-gram data from a file into an internal data structure for further processing. The file can also be a
+     * snapshot written by writeSnapshot, which is much faster to read back.
+     * @param fileName the name of the 1-gram data file or snapshot.
      * @throws FileNotFoundException if the file cannot be opened.
      */
     WordDataImpl (String fileName) throws FileNotFoundException
     {
-        // Makes a new Scanner that reads from a new File pointing to fileName
-        Scanner in = new Scanner(new File(fileName));
+        this(fileName, false);
+    }
 
-        System.out.println("Reading in file \"" + fileName + "\"...");
-        // Continues reading from the file until it has no more lines
-        while(in.hasNextLine())
+    /**
+     * Read 1-gram data from a file into an internal data structure for further processing, optionally keeping the
+     * year and count columns off of the heap (see OffHeapWordStore). Off heap columns are mapped from a snapshot, so a
+     * 1-gram file is read in as usual, written to a temporary snapshot and then mapped from there.
+     * @param fileName the name of the 1-gram data file or snapshot.
+     * @param offHeap true to keep the year and count columns off of the heap.
+     * @throws FileNotFoundException if the file cannot be opened.
+     */
+    WordDataImpl (String fileName, boolean offHeap) throws FileNotFoundException
+    {
+        this(Collections.singletonList(fileName), offHeap);
+    }
+
+    /**
+     * Read 1-gram data from several files (such as the shards of the Google corpus) into one internal data structure.
+     * The files are read at the same time and merged in the order they are given, so for a duplicate year the value
+     * in the earliest file is kept. A name can also be a directory or a pattern like data/1gram-*.csv.gz (see
+     * NGramLoader.expand), or a single snapshot.
+     * @param fileNames the names of the 1-gram data files.
+     * @param offHeap true to keep the year and count columns off of the heap.
+     * @throws FileNotFoundException if a file cannot be opened.
+     */
+    WordDataImpl (List<String> fileNames, boolean offHeap) throws FileNotFoundException
+    {
+        if(fileNames.size() == 1 && WordDataSnapshot.isSnapshot(fileNames.get(0)))
+            readSnapshot(fileNames.get(0), offHeap);
+        else
         {
-            // This is my PHP brain reminding me what each index is.
-            // tokenizedLine: 0 => word, 1 => year, 2 => number of occurrences in year
-            // Reads in a line from the file
-            String [] tokenizedLine = in.nextLine().split(",\\s*");
+            readOneGramFiles(NGramLoader.expand(fileNames));
+            if(offHeap)
+                moveOffHeap();
+        }
 
-            // Adds the word to the HashMap if it is needed
-            if(!words.containsKey(tokenizedLine[0].toLowerCase()))
-                addWord(tokenizedLine[0].toLowerCase());
+        WordStore built = store;
+        this.prefixIndex = CompletableFuture.supplyAsync(() ->
+        {
+            long phaseStart = System.nanoTime();
+            PrefixIndex index = new PrefixIndex(built.getDictionary().asList(), built::idOf);
+            stats.recordBackgroundPhase("prefix index", System.nanoTime() - phaseStart);
+            return index;
+        });
+    }
 
-            // Add the data of the line being read in to the word
-            addYearDataToWord(tokenizedLine[0].toLowerCase(), Integer.parseInt(tokenizedLine[1]), Long.parseLong(tokenizedLine[2]));
-        }
-        System.out.println("Finished reading in file.");
-        // Gets the overall ranks of each word and then sets it to the field
+    /**
+     * Reads 1-gram data files, then starts sorting the words to get their overall ranks.
+     * @param fileNames the names of the 1-gram data files.
+     * @throws FileNotFoundException if a file cannot be opened.
+     */
+    private void readOneGramFiles(List<String> fileNames) throws FileNotFoundException
+    {
+        if(fileNames.size() == 1)
+            System.out.println("Reading in file \"" + fileNames.get(0) + "\"...");
+        else
+            System.out.println("Reading in " + fileNames.size() + " files...");
+
+        // The files are memory mapped and parsed in blocks on several threads, then merged here in file order
+        NGramLoader loader = new NGramLoader();
+        List<ParsedChunk> chunks = loader.load(fileNames);
+        stats.recordPhase("split into blocks", loader.getSplitNanos());
+        stats.recordPhase("read and parse", loader.getParseNanos());
+
+        long phaseStart = System.nanoTime();
+        WordStore.Builder builder = new WordStore.Builder();
+        for(ParsedChunk chunk : chunks)
+            builder.add(chunk);
+        this.store = builder.build();
+        stats.recordPhase("index build", System.nanoTime() - phaseStart);
+
+        // Because the totalWords never changes, we can generate this value when we're reading in the file.
+        this.totalWords = builder.getTotalOccurrences();
+
+        // A word can't have two values for one year, the first one in the file is the one that is kept
+        if(builder.getDuplicateYears() > 0)
+            System.out.println(builder.getDuplicateYears() + " duplicate years were found, the first value is being used.");
+
+        System.out.printf("Finished reading in file. (%.1f MB at %.1f MB/s)%n",
+                loader.getBytesRead() / (1024.0 * 1024.0), loader.getMegabytesPerSecond());
+        this.rankingEngine = new RankingEngine(store);
+        this.rankCache = new RankCache(rankingEngine::rankAll, store.wordCount());
+
+        // Gets the overall ranks of each word in the background
         // This saves compute time when running the zipf command because the rank for the total of each word will
         // already be computed
-        this.overallRanks = getOverallRanks();
+        WordStore built = store;
+        this.overallRanks = CompletableFuture.supplyAsync(() ->
+        {
+            long sortStart = System.nanoTime();
+            OverallRanks ranks = new OverallRanks();
+            ranks.idsByRank = getOverallRanks(built);
+            stats.recordBackgroundPhase("overall rank sort", System.nanoTime() - sortStart);
+
+            // Indexes the ranks by word id so that looking up the overall rank of a word doesn't need to search for it
+            long indexStart = System.nanoTime();
+            ranks.rankById = RankingEngine.ranksFromOrder(ranks.idsByRank);
+            stats.recordBackgroundPhase("rank by id index", System.nanoTime() - indexStart);
+            return ranks;
+        });
     }
 
     /**
-     * Add word if needed is used when the file is being read in.
-     * @param word the word that is being added to the HashMap.
+     * Reads a snapshot. Everything that is computed when reading a 1-gram file is already in the snapshot, so this is
+     * just copying it back out (or mapping it, for off heap columns).
+     * @param fileName the name of the snapshot file.
+     * @param offHeap true to leave the year and count columns in the file instead of copying them onto the heap.
+     * @throws FileNotFoundException if the file cannot be opened.
      */
-    private void addWord(String word)
+    private void readSnapshot(String fileName, boolean offHeap) throws FileNotFoundException
     {
-        // Puts the new word into the HashMap with a key of the word and a value of a new word.
-        words.put(word, new Word(word));
+        System.out.println("Reading in snapshot \"" + fileName + "\"...");
+        long phaseStart = System.nanoTime();
+        WordDataSnapshot snapshot = WordDataSnapshot.read(fileName, offHeap);
+        stats.recordPhase("snapshot read", System.nanoTime() - phaseStart);
+
+        this.store = snapshot.store;
+        this.totalWords = snapshot.totalWords;
+        this.overallRanks = CompletableFuture.supplyAsync(() ->
+        {
+            long indexStart = System.nanoTime();
+            OverallRanks ranks = new OverallRanks();
+            ranks.rankById = snapshot.overallRankById;
+            ranks.idsByRank = new int[ranks.rankById.length];
+            for(int id = 0; id < ranks.rankById.length; id++)
+                ranks.idsByRank[ranks.rankById[id] - 1] = id;
+            stats.recordBackgroundPhase("rank order index", System.nanoTime() - indexStart);
+            return ranks;
+        });
+        this.rankingEngine = new RankingEngine(store);
+        this.rankCache = new RankCache(rankingEngine::rankAll, store.wordCount());
+        System.out.println("Finished reading in snapshot.");
+    }
 
-        // Adds the word to the readWords Collection. Again saves compute time.
-        this.wordsReadIn.add(word);
+    /**
+     * Moves the year and count columns off of the heap by writing a temporary snapshot and mapping its columns. The
+     * heap arrays are dropped, so the garbage collector can take them back.
+     */
+    private void moveOffHeap()
+    {
+        long phaseStart = System.nanoTime();
+        try
+        {
+            Path snapshotFile = Files.createTempFile("wordfreq-", ".snapshot");
+            snapshotFile.toFile().deleteOnExit();
+            // Only the columns are read back from the temporary snapshot, so it is written without waiting for the overall
+            // ranks, which may still be sorting, and its ranks are left as zeros
+            writeSnapshot(snapshotFile.toString(), new int[store.wordCount()]);
+            this.store = WordDataSnapshot.read(snapshotFile.toString(), true).store;
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        this.rankingEngine = new RankingEngine(store);
+        this.rankCache = new RankCache(rankingEngine::rankAll, store.wordCount());
+        stats.recordPhase("move off heap", System.nanoTime() - phaseStart);
     }
 
     /**
-     * Adds the year data to the Word. Word adds it to its contained HashMap with the year as the key and the
-     * occurrences as the value. Method is private so users cannot add their own data that unless in the file.
-     * @param word the String of the word which is being modified.
-     * @param year the year that is being added to the Word.
-     * @param occurrences the number of occurrences the word appeared in year.
+     * Writes everything that was read in, along with the overall ranks, to a binary snapshot. Passing the snapshot to
+     * the constructor later skips reading and sorting the 1-gram file all over again.
+     * @param fileName the name of the snapshot file to write, it is replaced if it already exists.
+     * @throws IOException if the snapshot cannot be written.
      */
-    private void addYearDataToWord(String word, int year, long occurrences)
+    void writeSnapshot(String fileName) throws IOException
     {
-        // We don't have to check if the word exists because no erroneous input will be given to this method
-        // It is private and therefore we know when it's going to be called.
-        Word getWord = words.get(word);
+        writeSnapshot(fileName, overallRanks.join().rankById);
+    }
 
-        // Because the totalWords never changes, we can generate this value when we're reading in the file.
-        totalWords += occurrences;
+    /**
+     * Writes everything that was read in to a binary snapshot, with the given overall ranks.
+     */
+    private void writeSnapshot(String fileName, int[] overallRankById) throws IOException
+    {
+        WordDataSnapshot snapshot = new WordDataSnapshot();
+        snapshot.store = store;
+        snapshot.overallRankById = overallRankById;
+        snapshot.totalWords = totalWords;
+        snapshot.write(fileName);
+    }
 
-        /*
-         * Attempts to add the data to the year, if it fails to add it, that means a duplicate year was
-         * provided which isn't allowed
-         */
-        if(!getWord.addDataForYear(year, occurrences))
-            System.out.println("Duplicate year was found, the first value is being used.");
+    /**
+     * Looks up the id of a word, ignoring its case.
+     * @param word the word to be looked up.
+     * @return The id of the word, or -1 if it wasn't read in.
+     */
+    private int idOf(String word)
+    {
+        return store.idOf(word.toLowerCase());
     }
 
     /**
@@ -92,8 +246,34 @@ public class WordDataImpl implements WordData
     @Override
     public void dumpData()
     {
-        // The word toString return ends on a new line character so this only needs to be "print" and not "println"
-        words.forEach((key, value) -> System.out.print(value));
+        // Written straight from the columns through one big buffer, rather than making a String for every word
+        WordDataExporter.dump(this);
+    }
+
+    /**
+     * Writes every word that was read in to an exporter.
+     * @param exporter where the words are written.
+     * @param order the order the words are written in.
+     * @throws IOException if the words cannot be written.
+     */
+    @Override
+    public void export(WordDataExporter exporter, WordDataExporter.Order order) throws IOException
+    {
+        switch(order)
+        {
+            case RANK:
+                for(int id : overallRanks.join().idsByRank)
+                    exporter.write(store, id);
+                break;
+            case WORD:
+                // Every word starts with no letters, so the prefix index hands back all of them in alphabetical order
+                for(int id : prefixIndex.join().idsWithPrefix(""))
+                    exporter.write(store, id);
+                break;
+            default:
+                for(int id = 0; id < store.wordCount(); id++)
+                    exporter.write(store, id);
+        }
     }
 
     /**
@@ -103,9 +283,8 @@ public class WordDataImpl implements WordData
     @Override
     public Collection<String> words()
     {
-        // Since all of the words are collected already, it saves time by saving the words to a Collection when
-        // the program is starting up
-        return wordsReadIn;
+        // The dictionary already holds every word in the order it was read in, so it is handed out as a view
+        return store.getDictionary().asList();
     }
 
     /**
@@ -121,125 +300,328 @@ public class WordDataImpl implements WordData
     }
 
     /**
-     * Computes the rank of a word for the entire data set.
+     * Computes the rank of a word for the entire data set. Until the overall ranks are finished being built the word
+     * is ranked on its own instead, which is one pass over the words rather than waiting for all of them to be sorted.
      * @param word the word to be looked up.
      * @return An int representing the rank of the word for the entire data set.
      */
     @Override
     public int getRankFor(String word)
     {
-        // The + 1 at the end is so the rank isn't the index of the item, but rather the correct rank
-        // I.E. the highest ranked word is 1 not 0
-        return overallRanks.indexOf(word.toLowerCase()) + 1;
+        long start = System.nanoTime();
+        int id = idOf(word);
+
+        // Once the ranks are built this is just an array lookup
+        OverallRanks ranks = overallRanks.getNow(null);
+        int rank = id < 0 ? UNRANKED
+                : ranks != null ? ranks.rankById[id] : rankingEngine.rankOf(id, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        stats.record(WordDataStats.Query.RANK, start);
+        return rank;
     }
 
     /**
      * It seemed like a waste of compute time to continually have to recompute the overall rank when running zipf,
-     * so this method gets the overall rank for each word and returns that in a list.
+     * so this method gets the overall rank for each word and returns the word ids in rank order.
      */
-    private List<String> getOverallRanks()
+    private static int[] getOverallRanks(WordStore store)
     {
-        // Creates a new empty HashMap
-        Map<String, Long> unsortedWordHashMap = new HashMap<>();
+        long[] totals = new long[store.wordCount()];
+        for(int id = 0; id < totals.length; id++)
+            totals[id] = store.getCount(id);
 
-        // Goes through words and adds each word and the total number of occurrences of the word to the HashMap
-        words.forEach((key, value) -> unsortedWordHashMap.put(key, value.getCount()));
-
-        // Calls sortWordMap to sort the HashMap and gets the ordered List of keys based on their occurrences
-        // Assigns it to the field overallRanks
-        return sortWordMapByValue(unsortedWordHashMap);
+        // Sorts the words by their total number of occurrences, highest first. Ties are broken the same way the
+        // RankingEngine breaks them (the word read in first wins) so both always agree on a rank.
+        return RankingEngine.orderByTotal(totals);
     }
 
     /**
      * Computes the rank of a word for a given year period in the data set.
      * @param word the word to be looked up.
-     * @param year the first year of the range of time desired.
+     * @param startYear the first year of the range of time desired.
+     * @param endYear the last year of the range of time desired.
      * @return An int representing the rank of the word for the entire data set.
      */
     @Override
+    public int getRankFor(String word, int startYear, int endYear)
+    {
+        long start = System.nanoTime();
+        int rank = rankInRange(word, startYear, endYear);
+        stats.record(WordDataStats.Query.RANK_RANGE, start);
+        return rank;
+    }
+
+    /**
+     * Computes the rank of a word for a given single year. This is only here so that it is timed separately from
+     * ranges of years.
+     * @param word the word to be looked up.
+     * @param year the year to be considered.
+     * @return An int representing the rank of the word in the year.
+     */
+    @Override
     public int getRankFor(String word, int year)
     {
+        long start = System.nanoTime();
+        int rank = rankInRange(word, year, year);
+        stats.record(WordDataStats.Query.RANK_YEAR, start);
+        return rank;
+    }
+
+    /**
+     * Computes the rank of a word for a given year period, without timing it.
+     */
+    private int rankInRange(String word, int startYear, int endYear)
+    {
+        int id = idOf(word);
+
         // Saves compute time if the word isn't in the list or if its number of occurrences is 0 in the range
-        if(!words.containsKey(word.toLowerCase()) || words.get(word.toLowerCase()).getCount(year) == 0)
+        if(id < 0 || store.getCount(id, startYear, endYear) == 0)
             return UNRANKED;
 
-        // Creates a new empty HashMap
-        Map<String, Long> unsortedWordHashMap = new HashMap<>();
+        // A range that is asked about again is ranked once and cached, after that any word in it is an array lookup.
+        // Sorting every word isn't worth it for one question, so the first one is answered with a single pass
+        int[] ranks = rankCache.repeatedRanksFor(startYear, endYear);
+        if(ranks == null)
+            return rankingEngine.rankOf(id, startYear, endYear);
+        return ranks[id];
+    }
+
+    /**
+     * Computes the ranks of several words for a given year period with a single pass over the data set, rather than
+     * one pass for each word.
+     * @param words the words to be looked up.
+     * @param startYear the first year of the range of time desired.
+     * @param endYear the last year of the range of time desired.
+     * @return An int array of the rank of each word, in the same order as words.
+     */
+    @Override
+    public int[] getRanksFor(Collection<String> words, int startYear, int endYear)
+    {
+        int[] ranks = new int[words.size()];
+
+        // Only the words which are in the data for the range get ranked, the rest stay UNRANKED
+        int[] positions = new int[ranks.length];
+        int[] targetIds = new int[ranks.length];
+        int targets = 0;
+        int position = 0;
+        for(String word : words)
+        {
+            int id = idOf(word);
+            if(id >= 0 && store.getCount(id, startYear, endYear) != 0)
+            {
+                positions[targets] = position;
+                targetIds[targets++] = id;
+            }
+            position++;
+        }
+
+        if(targets == 0)
+            return ranks;
+
+        // A cached ranking of the range is used if there is one, but a single pass is cheaper than sorting every word
+        // when there isn't, so nothing is added to the cache here
+        int[] cached = rankCache.cachedRanksFor(startYear, endYear);
+        if(cached != null)
+        {
+            for(int index = 0; index < targets; index++)
+                ranks[positions[index]] = cached[targetIds[index]];
+            return ranks;
+        }
 
-        // Goes through words and adds each word and the number of occurrences in the year for each word to the HashMap
-        words.forEach((key, value) -> unsortedWordHashMap.put(key, value.getCount(year)));
+        int[] targetRanks = rankingEngine.ranksOf(Arrays.copyOf(targetIds, targets), startYear, endYear);
+        for(int index = 0; index < targets; index++)
+            ranks[positions[index]] = targetRanks[index];
 
-        // Calls sortWordMap to sort the HashMap and gets the ordered List of keys based on their occurrences
-        List<String> sortedWordKeyList = sortWordMapByValue(unsortedWordHashMap);
+        return ranks;
+    }
 
-        // The + 1 at the end is so the rank isn't the index of the item, but rather the correct rank
-        // I.E. the highest ranked word is 1 not 0
-        return sortedWordKeyList.indexOf(word.toLowerCase()) + 1;
+    /**
+     * Gets the total count of every word in overall rank order. The ranks were computed when the data was read in so
+     * this is one pass over them.
+     * @return A long array where index r holds the count of the word ranked r + 1.
+     */
+    @Override
+    public long[] getRankedCounts()
+    {
+        int[] idsByOverallRank = overallRanks.join().idsByRank;
+        long[] ranking = new long[idsByOverallRank.length];
+        for(int rank = 0; rank < ranking.length; rank++)
+            ranking[rank] = store.getCount(idsByOverallRank[rank]);
+        return ranking;
     }
 
     /**
-     * Computes the rank of a word for a given year period in the data set.
+     * Gets the count of every word used in a given year period, highest first. Only the counts are needed, so they are
+     * sorted as a primitive array rather than sorting the words.
+     * @param startYear the first year of the range of time desired.
+     * @param endYear the last year of the range of time desired.
+     * @return A long array where index r holds the count of the word ranked r + 1 in the range.
+     */
+    @Override
+    public long[] getRankedCounts(int startYear, int endYear)
+    {
+        long[] counts = new long[store.wordCount()];
+        int used = 0;
+        for(int id = 0; id < counts.length; id++)
+        {
+            long count = store.getCount(id, startYear, endYear);
+            if(count != 0)
+                counts[used++] = count;
+        }
+
+        return RankingEngine.sortHighestFirst(Arrays.copyOf(counts, used));
+    }
+
+    /**
+     * Gets the most common words over the entire data set. The overall ranks were already computed when the data was
+     * read in, so this just takes the first k of them.
+     * @param k how many words are wanted.
+     * @return A List of up to k words, most common first.
+     */
+    @Override
+    public List<String> topWords(int k)
+    {
+        // Words with no occurrences at all are left out, the same as for a range of years
+        return RankingEngine.topOfOrder(overallRanks.join().idsByRank, k, store::getCount, store::wordOf);
+    }
+
+    /**
+     * Gets the most common words for a given year period. Only the best k words are kept while going through the data
+     * set, so nothing close to the whole vocabulary is ever sorted.
+     * @param k how many words are wanted.
+     * @param startYear the first year of the range of time desired.
+     * @param endYear the last year of the range of time desired.
+     * @return A List of up to k words, most common first.
+     */
+    @Override
+    public List<String> topWords(int k, int startYear, int endYear)
+    {
+        List<String> top = new ArrayList<>();
+        for(int id : rankingEngine.topIds(k, startYear, endYear))
+            top.add(store.wordOf(id));
+        return top;
+    }
+
+    /**
+     * Finds the words whose rank changed the most between two year periods. Both periods are ranked whole through the
+     * rank cache, so each is sorted at most once, and then the two rankings are compared in parallel.
+     * @param aStart the first year of the first period.
+     * @param aEnd the last year of the first period.
+     * @param bStart the first year of the second period.
+     * @param bEnd the last year of the second period.
+     * @param k how many words are wanted in each direction.
+     * @return Up to k words that went up the most and up to k that went down the most.
+     */
+    @Override
+    public RankDelta rankDelta(int aStart, int aEnd, int bStart, int bEnd, int k)
+    {
+        return RankDelta.between(usedRanks(aStart, aEnd), usedRanks(bStart, bEnd), k, store::wordOf);
+    }
+
+    /**
+     * Gets the cached ranking of a year period with the words that weren't used in it left UNRANKED.
+     */
+    private int[] usedRanks(int startYear, int endYear)
+    {
+        int[] ranks = rankCache.ranksFor(startYear, endYear).clone();
+        for(int id = 0; id < ranks.length; id++)
+        {
+            if(store.getCount(id, startYear, endYear) == 0)
+                ranks[id] = UNRANKED;
+        }
+        return ranks;
+    }
+
+    /**
+     * Gets the number of times each of several words appeared for the given year range.
+     * @param words the words to be looked up.
+     * @param startYear the first year of the range of time desired.
+     * @param endYear the last year of the range of time desired.
+     * @return A long array of the occurrences of each word in the specified time period, in the same order as words.
+     */
+    @Override
+    public long[] getCountsFor(Collection<String> words, int startYear, int endYear)
+    {
+        long[] counts = new long[words.size()];
+        int index = 0;
+        for(String word : words)
+        {
+            int id = idOf(word);
+            counts[index++] = id < 0 ? 0 : store.getCount(id, startYear, endYear);
+        }
+        return counts;
+    }
+
+    /**
+     * Gets the count of a word in every year of a range with a single pass over the word's years. Nothing is
+     * allocated as long as the word is already in lower case.
      * @param word the word to be looked up.
      * @param startYear the first year of the range of time desired.
      * @param endYear the last year of the range of time desired.
-     * @return An int representing the rank of the word for the entire data set.
+     * @param out gets the count of year y at out[y - startYear].
      */
     @Override
-    public int getRankFor(String word, int startYear, int endYear)
+    public void getSeries(String word, int startYear, int endYear, long[] out)
     {
-        // Saves compute time if the word isn't in the list or if its number of occurrences is 0 in the range
-        if(!words.containsKey(word.toLowerCase()) || words.get(word.toLowerCase()).getCount(startYear, endYear) == 0)
-            return UNRANKED;
+        int years = WordData.seriesLength(startYear, endYear, 1, out);
+        fillSeries(word, startYear, endYear, out, 0, years);
+    }
 
-        // Creates a new empty HashMap
-        Map<String, Long> unsortedWordHashMap = new HashMap<>();
-
-        // Goes through words and adds each word and the number of occurrences in the range for each word to the HashMap
-        words.forEach((key, value) -> unsortedWordHashMap.put(key, value.getCount(startYear, endYear)));
-
-        // Calls sortWordMap to sort the HashMap and gets the ordered List of keys based on their occurrences
-        List<String> sortedWordKeyList = sortWordMapByValue(unsortedWordHashMap);
-
-        // The + 1 at the end is so the rank isn't the index of the item, but rather the correct rank
-        // I.E. the highest ranked word is 1 not 0
-        return sortedWordKeyList.indexOf(word.toLowerCase()) + 1;
-    }
-
-    /**
-     * This sorts an unsorted HashMap of words and their occurrences into a sorted List of the words based on its
-     * occurrences.
-     * @param unsortedWordMap the unsorted Map of Word objects.
-     * @return A List of Strings representing the sorted words by occurrences.
-     */
-    private List<String> sortWordMapByValue(Map<String, Long> unsortedWordMap)
-    {
-        /* The keys which are the words are sorted so the sorted results are dumped to an ArrayList of String objects
-         * Once the map is sorted then there is no reason to keep their values which is why a List was preferred
-         * The lambda expression words as outlined below:
-         *
-         * 1. Explodes the unsortedHashMap into an entry set (i.e. makes a set of Map.Entry<K,V> items)
-         *
-         * 2. Puts the entry set into a stream
-         *
-         * 3. The stream is sorted using the comparingByValue() and then is reversed
-         *    As a note: reverse ordering is used over natural ordering because a word's rank
-         *    is determined by its index in the ArrayList. So instead of naturally sorting the words
-         *    and then reversing the list after, Comparator's reverse sorting is used
-         *
-         * 4. The now sorted set is put into an ArrayList of the keys (which are the words) and returned
-        */
-        return new ArrayList<>(
-                unsortedWordMap.entrySet()
-                .stream()
-                .sorted(
-                        Map.Entry.comparingByValue(Comparator.reverseOrder())
-                )
-                .collect(
-                        Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue,
-                                (collisionValue1, collisionValue2) -> collisionValue1, LinkedHashMap::new)
-                )
-                .keySet()
-        );
+    /**
+     * Gets the count of several words in every year of a range, one word's series after another, without allocating.
+     * @param words the words to be looked up.
+     * @param startYear the first year of the range of time desired.
+     * @param endYear the last year of the range of time desired.
+     * @param out gets the count of words[w] in year y at out[w * (endYear - startYear + 1) + y - startYear].
+     */
+    @Override
+    public void getSeries(String[] words, int startYear, int endYear, long[] out)
+    {
+        int years = WordData.seriesLength(startYear, endYear, words.length, out);
+        for(int index = 0; index < words.length; index++)
+            fillSeries(words[index], startYear, endYear, out, index * years, years);
+    }
+
+    /**
+     * Writes the series of one word, all zeros if the word wasn't read in.
+     */
+    private void fillSeries(String word, int startYear, int endYear, long[] out, int offset, int years)
+    {
+        int id = idOf(word);
+        if(id < 0)
+            Arrays.fill(out, offset, offset + years, 0);
+        else
+            store.fillSeries(id, startYear, endYear, out, offset);
+    }
+
+    /**
+     * Gets every word that starts with some letters from the prefix index, so only the words that match are looked at.
+     * @param prefix the letters the words start with, in any case.
+     * @return The words that start with prefix, in alphabetical order.
+     */
+    @Override
+    public List<String> wordsWithPrefix(String prefix)
+    {
+        List<String> matches = new ArrayList<>();
+        for(int id : prefixIndex.join().idsWithPrefix(prefix.toLowerCase()))
+            matches.add(store.wordOf(id));
+        return matches;
+    }
+
+    /**
+     * Gets the number of times all of the words starting with some letters appeared for the given year range. Only
+     * the words that match are looked at.
+     * @param prefix the letters the words start with, in any case.
+     * @param startYear the first year of the range of time desired.
+     * @param endYear the last year of the range of time desired.
+     * @return The total number of occurrences of the words in the range.
+     */
+    @Override
+    public long getPrefixCount(String prefix, int startYear, int endYear)
+    {
+        long total = 0;
+        for(int id : prefixIndex.join().idsWithPrefix(prefix.toLowerCase()))
+            total += store.getCount(id, startYear, endYear);
+        return total;
     }
 
     /**
@@ -250,8 +632,13 @@ public class WordDataImpl implements WordData
     @Override
     public long getCountFor(String word)
     {
+        long start = System.nanoTime();
+        int id = idOf(word);
+
         // Returns the total number of occurrences for the word in the data set if it exists, otherwise returns 0
-        return words.containsKey(word.toLowerCase()) ? words.get(word.toLowerCase()).getCount() : 0;
+        long count = id < 0 ? 0 : store.getCount(id);
+        stats.record(WordDataStats.Query.COUNT, start);
+        return count;
     }
 
     /**
@@ -263,8 +650,13 @@ public class WordDataImpl implements WordData
     @Override
     public long getCountFor(String word, int year)
     {
+        long start = System.nanoTime();
+        int id = idOf(word);
+
         // Returns the total number of occurrences for the word in the year if it exists, otherwise returns 0
-        return words.containsKey(word.toLowerCase()) ? words.get(word.toLowerCase()).getCount(year) : 0;
+        long count = id < 0 ? 0 : store.getCount(id, year);
+        stats.record(WordDataStats.Query.COUNT_YEAR, start);
+        return count;
     }
 
     /**
@@ -277,7 +669,69 @@ public class WordDataImpl implements WordData
     @Override
     public long getCountFor(String word, int startYear, int endYear)
     {
+        long start = System.nanoTime();
+        int id = idOf(word);
+
         // Returns the total number of occurrence for the word in the year range if it exists, otherwise returns 0
-        return words.containsKey(word) ? words.get(word).getCount(startYear, endYear) : 0;
+        long count = id < 0 ? 0 : store.getCount(id, startYear, endYear);
+        stats.record(WordDataStats.Query.COUNT_RANGE, start);
+        return count;
+    }
+
+    /**
+     * Waits for the overall ranks and the prefix index, which are built in the background after loading, to be
+     * finished. Nothing needs to call this, queries wait for what they need, but it lets a whole load be timed.
+     */
+    void awaitIndexes()
+    {
+        CompletableFuture.allOf(overallRanks, prefixIndex).join();
+    }
+
+    /**
+     * Gets the cache of year range rankings, so that how well it is working can be reported.
+     * @return The RankCache used by getRankFor.
+     */
+    RankCache getRankCache()
+    {
+        return rankCache;
+    }
+
+    /**
+     * Gets the load phase times and query latencies recorded so far.
+     * @return The WordDataStats of this data.
+     */
+    WordDataStats getStats()
+    {
+        return stats;
+    }
+
+    /**
+     * Writes the load phase times, query latencies, estimated memory use and rank cache counters.
+     * @param out where the statistics are written.
+     * @param json true for a single line of JSON, false for a report meant for people.
+     */
+    void writeStats(PrintWriter out, boolean json)
+    {
+        Map<String, Long> memory = store.estimateBytes();
+        // An index that is still being built isn't holding its memory yet
+        memory.put("overall ranks",
+                overallRanks.isDone() ? 2 * WordDataStats.arrayBytes(store.wordCount(), Integer.BYTES) : 0);
+        PrefixIndex index = prefixIndex.getNow(null);
+        memory.put("prefix index", index == null ? 0 : index.estimateBytes());
+        memory.put("rank cache", rankCache.size() * rankCache.getBytesPerEntry());
+
+        Map<String, Long> counters = new LinkedHashMap<>();
+        counters.put("words", (long)store.wordCount());
+        counters.put("lines", (long)store.lineCount());
+        counters.put("rank cache entries", (long)rankCache.size());
+        counters.put("rank cache capacity", (long)rankCache.getCapacity());
+        counters.put("rank cache hits", rankCache.getHits());
+        counters.put("rank cache misses", rankCache.getMisses());
+        counters.put("rank cache evictions", rankCache.getEvictions());
+
+        if(json)
+            stats.writeJson(out, memory, counters);
+        else
+            stats.writeReport(out, memory, counters);
     }
 }
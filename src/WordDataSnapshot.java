@@ -0,0 +1,329 @@
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A WordDataSnapshot is a compact binary copy of everything a WordDataImpl builds when it reads a 1-gram file: the
+ * words, each word's years and counts, the prefix sums of the counts and the overall ranks. Reading a snapshot back is
+ * a handful of bulk copies out of a memory mapped file, so nothing has to be parsed or sorted again.
+ * <br>
+ * The layout of the file is (all numbers little-endian, every section starts on an 8 byte boundary):
+ * <pre>
+ *     magic "WFSNAP01", int version, int word count, long line count, long total words
+ *     int[word count + 1]  offsets of each word's lines (word id i owns lines offsets[i] to offsets[i + 1] - 1)
+ *     int[word count]      overall rank of each word id
+ *     int[word count + 1]  offsets of each word's UTF-8 bytes
+ *     byte[]               the UTF-8 bytes of every word, in id order
+ *     int[line count]      years, sorted within each word
+ *     long[line count]     counts
+ *     long[line count + 1] prefix sums of the counts
+ * </pre>
+ *
+ * @author Kevin Becker
+ */
+class WordDataSnapshot
+{
+    private static final byte[] MAGIC = "WFSNAP01".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    // The most bytes mapped at once when reading a section back
+    private static final int MAX_WINDOW = 1 << 30;
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    // The contents of a snapshot
+    WordStore store;
+    int[] overallRankById;
+    long totalWords;
+
+    /**
+     * Checks if a file is a snapshot by looking at its first few bytes.
+     * @param fileName the name of the file.
+     * @return true if the file is a snapshot, false if it isn't or if it cannot be read.
+     */
+    static boolean isSnapshot(String fileName)
+    {
+        Path path = Paths.get(fileName);
+        if(!Files.isRegularFile(path))
+            return false;
+
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+            while(magic.hasRemaining() && channel.read(magic) > 0);
+
+            return !magic.hasRemaining() && Arrays.equals(magic.array(), MAGIC);
+        }
+        catch(IOException e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Writes a snapshot. It is written to a new file next to fileName which is then renamed over it, so a snapshot
+     * that is mapped (by --off-heap) is never cut short underneath the mapping while being replaced.
+     * @param fileName the name of the file to write to, it is replaced if it already exists.
+     * @throws IOException if the file cannot be written.
+     */
+    void write(String fileName) throws IOException
+    {
+        Path path = Paths.get(fileName).toAbsolutePath();
+        Path temporary = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+        try
+        {
+            writeTo(temporary);
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Writes a snapshot into a file which nothing else has open.
+     */
+    private void writeTo(Path path) throws IOException
+    {
+        int wordCount = store.wordCount();
+        byte[][] wordBytes = new byte[wordCount][];
+        int[] wordByteOffsets = new int[wordCount + 1];
+        for(int id = 0; id < wordCount; id++)
+        {
+            wordBytes[id] = store.wordOf(id).getBytes(StandardCharsets.UTF_8);
+            wordByteOffsets[id + 1] = wordByteOffsets[id] + wordBytes[id].length;
+        }
+
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            ByteBuffer out = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+            out.put(MAGIC).putInt(VERSION).putInt(wordCount).putLong(store.lineCount()).putLong(totalWords);
+
+            for(int offset : store.getLineOffsets())
+                putInt(channel, out, offset);
+            pad(channel, out);
+            for(int rank : overallRankById)
+                putInt(channel, out, rank);
+            pad(channel, out);
+            for(int offset : wordByteOffsets)
+                putInt(channel, out, offset);
+            pad(channel, out);
+            for(byte[] bytes : wordBytes)
+            {
+                for(byte b : bytes)
+                {
+                    if(!out.hasRemaining())
+                        flush(channel, out);
+                    out.put(b);
+                }
+            }
+            pad(channel, out);
+            // The columns are read a line at a time so that any kind of store can be written
+            int lineCount = store.lineCount();
+            for(int line = 0; line < lineCount; line++)
+                putInt(channel, out, store.yearOf(line));
+            pad(channel, out);
+            for(int line = 0; line < lineCount; line++)
+                putLong(channel, out, store.countOf(line));
+            long sum = 0;
+            putLong(channel, out, sum);
+            for(int line = 0; line < lineCount; line++)
+            {
+                sum += store.countOf(line);
+                putLong(channel, out, sum);
+            }
+
+            flush(channel, out);
+        }
+    }
+
+    /**
+     * Reads a snapshot back by memory mapping it.
+     * @param fileName the name of the snapshot file.
+     * @return The contents of the snapshot.
+     * @throws FileNotFoundException if the file cannot be opened.
+     * @throws IllegalArgumentException if the file is not a snapshot this version can read.
+     */
+    static WordDataSnapshot read(String fileName) throws FileNotFoundException
+    {
+        return read(fileName, false);
+    }
+
+    /**
+     * Reads a snapshot back by memory mapping it.
+     * @param fileName the name of the snapshot file.
+     * @param offHeap true to leave the years, counts and prefix sums in the file (see OffHeapWordStore), false to copy
+     *                them onto the heap.
+     * @return The contents of the snapshot.
+     * @throws FileNotFoundException if the file cannot be opened.
+     * @throws IllegalArgumentException if the file is not a snapshot this version can read.
+     */
+    static WordDataSnapshot read(String fileName, boolean offHeap) throws FileNotFoundException
+    {
+        Path path = Paths.get(fileName);
+        if(!Files.isRegularFile(path) || !Files.isReadable(path))
+            throw new FileNotFoundException(fileName + " (No such file or it cannot be read)");
+
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            ByteBuffer header = map(channel, 0, HEADER_SIZE);
+            byte[] magic = new byte[MAGIC.length];
+            header.get(magic);
+            if(!Arrays.equals(magic, MAGIC) || header.getInt() != VERSION)
+                throw new IllegalArgumentException(fileName + " is not a word data snapshot this version can read");
+
+            int wordCount = header.getInt();
+            long lineCount = header.getLong();
+            if(lineCount > Integer.MAX_VALUE - 1)
+                throw new IllegalArgumentException(fileName + " has too many lines to be read");
+
+            WordDataSnapshot snapshot = new WordDataSnapshot();
+            snapshot.totalWords = header.getLong();
+
+            long position = HEADER_SIZE;
+            int[] lineOffsets = new int[wordCount + 1];
+            position = align(readInts(channel, position, lineOffsets));
+            snapshot.overallRankById = new int[wordCount];
+            position = align(readInts(channel, position, snapshot.overallRankById));
+            int[] wordByteOffsets = new int[wordCount + 1];
+            position = align(readInts(channel, position, wordByteOffsets));
+
+            // Every word's bytes are decoded out of a single mapping of the word section
+            String[] words = new String[wordCount];
+            ByteBuffer wordSection = map(channel, position, wordByteOffsets[wordCount]);
+            byte[] bytes = new byte[64];
+            for(int id = 0; id < wordCount; id++)
+            {
+                int length = wordByteOffsets[id + 1] - wordByteOffsets[id];
+                if(length > bytes.length)
+                    bytes = new byte[Math.max(length, bytes.length * 2)];
+                wordSection.get(bytes, 0, length);
+                words[id] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+            }
+            position = align(position + wordByteOffsets[wordCount]);
+
+            if(offHeap)
+            {
+                long countsPosition = align(position + lineCount * Integer.BYTES);
+                long prefixSumsPosition = countsPosition + lineCount * Long.BYTES;
+                if(prefixSumsPosition + (lineCount + 1) * Long.BYTES > channel.size())
+                    throw new IllegalArgumentException("The snapshot file is truncated");
+
+                snapshot.store = new OffHeapWordStore(new WordDictionary(words), lineOffsets, channel, position,
+                        countsPosition, prefixSumsPosition);
+                return snapshot;
+            }
+
+            int[] years = new int[(int)lineCount];
+            position = align(readInts(channel, position, years));
+            long[] counts = new long[(int)lineCount];
+            position = readLongs(channel, position, counts);
+            long[] prefixSums = new long[(int)lineCount + 1];
+            readLongs(channel, position, prefixSums);
+
+            // The columns are laid out exactly as a WordStore keeps them, so they are used as they are
+            snapshot.store = new WordStore(new WordDictionary(words), lineOffsets, years, counts, prefixSums);
+
+            return snapshot;
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads an array of ints, mapping the file a window at a time.
+     * @return The position after the last int read.
+     */
+    private static long readInts(FileChannel channel, long position, int[] destination) throws IOException
+    {
+        int done = 0;
+        while(done < destination.length)
+        {
+            int length = Math.min(destination.length - done, MAX_WINDOW / Integer.BYTES);
+            map(channel, position, (long)length * Integer.BYTES).asIntBuffer().get(destination, done, length);
+            done += length;
+            position += (long)length * Integer.BYTES;
+        }
+        return position;
+    }
+
+    /**
+     * Reads an array of longs, mapping the file a window at a time.
+     * @return The position after the last long read.
+     */
+    private static long readLongs(FileChannel channel, long position, long[] destination) throws IOException
+    {
+        int done = 0;
+        while(done < destination.length)
+        {
+            int length = Math.min(destination.length - done, MAX_WINDOW / Long.BYTES);
+            map(channel, position, (long)length * Long.BYTES).asLongBuffer().get(destination, done, length);
+            done += length;
+            position += (long)length * Long.BYTES;
+        }
+        return position;
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long position, long size) throws IOException
+    {
+        if(position + size > channel.size())
+            throw new IllegalArgumentException("The snapshot file is truncated");
+
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    private static long align(long position)
+    {
+        return (position + 7) & ~7L;
+    }
+
+    private static void putInt(FileChannel channel, ByteBuffer out, int value) throws IOException
+    {
+        if(out.remaining() < Integer.BYTES)
+            flush(channel, out);
+        out.putInt(value);
+    }
+
+    private static void putLong(FileChannel channel, ByteBuffer out, long value) throws IOException
+    {
+        if(out.remaining() < Long.BYTES)
+            flush(channel, out);
+        out.putLong(value);
+    }
+
+    /**
+     * Pads the output with zeros up to the next 8 byte boundary of the file.
+     */
+    private static void pad(FileChannel channel, ByteBuffer out) throws IOException
+    {
+        if(out.remaining() < Long.BYTES)
+            flush(channel, out);
+        while(((channel.position() + out.position()) & 7) != 0)
+            out.put((byte)0);
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer out) throws IOException
+    {
+        out.flip();
+        while(out.hasRemaining())
+            channel.write(out);
+        out.clear();
+    }
+}
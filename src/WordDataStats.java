@@ -0,0 +1,248 @@
+import java.io.PrintWriter;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * WordDataStats keeps track of where a WordDataImpl spends its time: how long each phase of loading the data took and
+ * a LatencyHistogram for each kind of count and rank query. It can write everything out as a report for people or as
+ * a single line of JSON for scripts.
+ * <br>
+ * Queries can be recorded from any number of threads at once.
+ *
+ * @author Kevin Becker
+ */
+class WordDataStats
+{
+    /**
+     * The queries that are timed, one for each version of getCountFor and getRankFor.
+     */
+    enum Query
+    {
+        COUNT("getCountFor(word)"),
+        COUNT_YEAR("getCountFor(word, year)"),
+        COUNT_RANGE("getCountFor(word, start, end)"),
+        RANK("getRankFor(word)"),
+        RANK_YEAR("getRankFor(word, year)"),
+        RANK_RANGE("getRankFor(word, start, end)");
+
+        private String method;
+
+        Query(String method)
+        {
+            this.method = method;
+        }
+
+        String getMethod()
+        {
+            return method;
+        }
+    }
+
+    // How long each phase of loading took, in the order they happened
+    private Map<String, Long> phaseNanos = new LinkedHashMap<>();
+    // How long the work done on other threads after loading took, which overlaps the load and the first queries
+    private Map<String, Long> backgroundNanos = new LinkedHashMap<>();
+    private Map<Query, LatencyHistogram> queryLatencies = new EnumMap<>(Query.class);
+
+    /**
+     * Constructs a new WordDataStats with nothing recorded.
+     */
+    WordDataStats()
+    {
+        for(Query query : Query.values())
+            queryLatencies.put(query, new LatencyHistogram());
+    }
+
+    /**
+     * Records how long a phase of loading took.
+     * @param phase the name of the phase.
+     * @param nanos how long it took, in nanoseconds.
+     */
+    synchronized void recordPhase(String phase, long nanos)
+    {
+        phaseNanos.merge(phase, nanos, Long::sum);
+    }
+
+    /**
+     * Records how long some work that was started by loading but run in the background took. It isn't added to the
+     * load time, since it ran at the same time as the rest of the load.
+     * @param phase the name of the work.
+     * @param nanos how long it took, in nanoseconds.
+     */
+    synchronized void recordBackgroundPhase(String phase, long nanos)
+    {
+        backgroundNanos.merge(phase, nanos, Long::sum);
+    }
+
+    /**
+     * Records a query that has just finished.
+     * @param query the kind of query.
+     * @param startNanos the System.nanoTime() when the query started.
+     */
+    void record(Query query, long startNanos)
+    {
+        queryLatencies.get(query).record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Gets the latencies of a kind of query.
+     * @param query the kind of query.
+     * @return The LatencyHistogram of the query.
+     */
+    LatencyHistogram getLatencies(Query query)
+    {
+        return queryLatencies.get(query);
+    }
+
+    /**
+     * Writes a report of everything recorded.
+     * @param out where the report is written.
+     * @param memory an estimate of the bytes held by each part of the data.
+     * @param counters any other numbers worth reporting, such as the rank cache's hits and misses.
+     */
+    void writeReport(PrintWriter out, Map<String, Long> memory, Map<String, Long> counters)
+    {
+        out.println("Load phases:");
+        long totalNanos = 0;
+        for(Map.Entry<String, Long> phase : phases().entrySet())
+        {
+            out.printf("    %-30s %12.1f ms%n", phase.getKey(), phase.getValue() / 1e6);
+            totalNanos += phase.getValue();
+        }
+        out.printf("    %-30s %12.1f ms%n", "total", totalNanos / 1e6);
+        Map<String, Long> background = backgroundPhases();
+        if(!background.isEmpty())
+        {
+            out.println("Background phases (not part of the total):");
+            for(Map.Entry<String, Long> phase : background.entrySet())
+                out.printf("    %-30s %12.1f ms%n", phase.getKey(), phase.getValue() / 1e6);
+        }
+
+        out.println("Query latencies (microseconds):");
+        out.printf("    %-30s %10s %10s %10s %10s %10s %10s%n", "", "count", "mean", "p50", "p90", "p99", "max");
+        for(Query query : Query.values())
+        {
+            LatencyHistogram latencies = queryLatencies.get(query);
+            out.printf("    %-30s %10d %10.1f %10.1f %10.1f %10.1f %10.1f%n", query.getMethod(), latencies.getCount(),
+                    latencies.getMeanNanos() / 1e3, latencies.getPercentileNanos(0.5) / 1e3,
+                    latencies.getPercentileNanos(0.9) / 1e3, latencies.getPercentileNanos(0.99) / 1e3,
+                    latencies.getMaxNanos() / 1e3);
+        }
+
+        out.println("Estimated retained memory:");
+        long totalBytes = 0;
+        for(Map.Entry<String, Long> part : memory.entrySet())
+        {
+            out.printf("    %-30s %12.1f MB%n", part.getKey(), part.getValue() / (1024.0 * 1024.0));
+            totalBytes += part.getValue();
+        }
+        out.printf("    %-30s %12.1f MB%n", "total", totalBytes / (1024.0 * 1024.0));
+
+        if(!counters.isEmpty())
+        {
+            out.println("Counters:");
+            for(Map.Entry<String, Long> counter : counters.entrySet())
+                out.printf("    %-30s %12d%n", counter.getKey(), counter.getValue());
+        }
+
+        Runtime runtime = Runtime.getRuntime();
+        out.printf("JVM heap: %.1f MB used, %.1f MB max%n",
+                (runtime.totalMemory() - runtime.freeMemory()) / (1024.0 * 1024.0),
+                runtime.maxMemory() / (1024.0 * 1024.0));
+    }
+
+    /**
+     * Writes everything recorded as one line of JSON. Times are in nanoseconds and memory is in bytes.
+     * @param out where the JSON is written.
+     * @param memory an estimate of the bytes held by each part of the data.
+     * @param counters any other numbers worth reporting, such as the rank cache's hits and misses.
+     */
+    void writeJson(PrintWriter out, Map<String, Long> memory, Map<String, Long> counters)
+    {
+        StringBuilder json = new StringBuilder("{\"phasesNanos\":");
+        appendObject(json, phases());
+        json.append(",\"backgroundPhasesNanos\":");
+        appendObject(json, backgroundPhases());
+
+        json.append(",\"queries\":{");
+        for(Query query : Query.values())
+        {
+            LatencyHistogram latencies = queryLatencies.get(query);
+            if(query.ordinal() > 0)
+                json.append(',');
+            appendString(json, query.getMethod());
+            json.append(":{\"count\":").append(latencies.getCount())
+                    .append(",\"meanNanos\":").append(Math.round(latencies.getMeanNanos()))
+                    .append(",\"p50Nanos\":").append(latencies.getPercentileNanos(0.5))
+                    .append(",\"p90Nanos\":").append(latencies.getPercentileNanos(0.9))
+                    .append(",\"p99Nanos\":").append(latencies.getPercentileNanos(0.99))
+                    .append(",\"maxNanos\":").append(latencies.getMaxNanos())
+                    .append('}');
+        }
+        json.append('}');
+
+        json.append(",\"memoryBytes\":");
+        appendObject(json, memory);
+        json.append(",\"counters\":");
+        appendObject(json, counters);
+
+        Runtime runtime = Runtime.getRuntime();
+        json.append(",\"heapUsedBytes\":").append(runtime.totalMemory() - runtime.freeMemory())
+                .append(",\"heapMaxBytes\":").append(runtime.maxMemory())
+                .append('}');
+        out.println(json);
+    }
+
+    /**
+     * Estimates the bytes an array takes up on the heap, with a 16 byte header and rounded up to 8 bytes.
+     * @param length the length of the array.
+     * @param elementBytes the size of each element.
+     * @return The estimated size of the array in bytes.
+     */
+    static long arrayBytes(long length, int elementBytes)
+    {
+        return (16 + length * elementBytes + 7) & ~7L;
+    }
+
+    private synchronized Map<String, Long> phases()
+    {
+        return new LinkedHashMap<>(phaseNanos);
+    }
+
+    private synchronized Map<String, Long> backgroundPhases()
+    {
+        return new LinkedHashMap<>(backgroundNanos);
+    }
+
+    private static void appendObject(StringBuilder json, Map<String, Long> values)
+    {
+        json.append('{');
+        boolean first = true;
+        for(Map.Entry<String, Long> value : values.entrySet())
+        {
+            if(!first)
+                json.append(',');
+            first = false;
+            appendString(json, value.getKey());
+            json.append(':').append(value.getValue());
+        }
+        json.append('}');
+    }
+
+    private static void appendString(StringBuilder json, String value)
+    {
+        json.append('"');
+        for(int index = 0; index < value.length(); index++)
+        {
+            char c = value.charAt(index);
+            if(c == '"' || c == '\\')
+                json.append('\\').append(c);
+            else if(c < 0x20)
+                json.append(String.format("\\u%04x", (int)c));
+            else
+                json.append(c);
+        }
+        json.append('"');
+    }
+}
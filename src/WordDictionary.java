@@ -0,0 +1,201 @@
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The WordDictionary gives every distinct word an int id, starting at 0 in the order the words are added. It is an
+ * open addressing hash table of ids into a single array of words, so unlike a HashMap there is no entry object or
+ * boxed Integer for each word.
+ *
+ * @author Kevin Becker
+ */
+class WordDictionary
+{
+    private static final int NO_ID = -1;
+
+    private String[] words;
+    private int size = 0;
+    // Slots of the hash table hold a word id, or NO_ID if the slot is empty
+    private int[] table;
+    private int mask;
+
+    /**
+     * Constructs an empty WordDictionary.
+     */
+    WordDictionary()
+    {
+        this(16);
+    }
+
+    /**
+     * Constructs an empty WordDictionary with room for some number of words before it has to grow.
+     * @param expectedWords the number of words expected to be added.
+     */
+    WordDictionary(int expectedWords)
+    {
+        words = new String[Math.max(16, expectedWords)];
+        allocateTable(words.length);
+    }
+
+    /**
+     * Constructs a WordDictionary of words that already have ids (such as from a snapshot).
+     * @param words the words, where the index of each word is its id. The array is used as is, not copied.
+     */
+    WordDictionary(String[] words)
+    {
+        this.words = words;
+        this.size = words.length;
+        allocateTable(words.length);
+        for(int id = 0; id < size; id++)
+            insert(id);
+    }
+
+    /**
+     * Gets the id of a word.
+     * @param word the word to be looked up.
+     * @return The id of the word, or -1 if it is not in the dictionary.
+     */
+    int idOf(String word)
+    {
+        int slot = hash(word) & mask;
+        while(table[slot] != NO_ID)
+        {
+            if(words[table[slot]].equals(word))
+                return table[slot];
+            slot = (slot + 1) & mask;
+        }
+        return NO_ID;
+    }
+
+    /**
+     * Adds a word if it is not already in the dictionary.
+     * @param word the word to be added.
+     * @return The id of the word, whether it was just added or not.
+     */
+    int add(String word)
+    {
+        int slot = hash(word) & mask;
+        while(table[slot] != NO_ID)
+        {
+            if(words[table[slot]].equals(word))
+                return table[slot];
+            slot = (slot + 1) & mask;
+        }
+
+        if(size == words.length)
+            words = Arrays.copyOf(words, size * 2);
+        words[size] = word;
+        table[slot] = size;
+
+        // The table is kept at most half full so that probes stay short
+        if(++size * 2 > table.length)
+        {
+            allocateTable(table.length);
+            for(int id = 0; id < size; id++)
+                insert(id);
+        }
+
+        return size - 1;
+    }
+
+    /**
+     * Gets the word with an id.
+     * @param id the id of the word.
+     * @return The word.
+     */
+    String wordOf(int id)
+    {
+        return words[id];
+    }
+
+    /**
+     * Gets the number of words in the dictionary.
+     * @return The number of words.
+     */
+    int size()
+    {
+        return size;
+    }
+
+    /**
+     * Trims the word array down to the number of words. This should be called once no more words will be added.
+     */
+    void trimToSize()
+    {
+        if(words.length != size)
+            words = Arrays.copyOf(words, size);
+    }
+
+    /**
+     * Estimates the bytes the dictionary holds on the heap: its two arrays and every word String (a String object and
+     * its byte array, which has one byte per character unless a character doesn't fit in a byte).
+     * @return The estimated size in bytes.
+     */
+    long estimateBytes()
+    {
+        long bytes = WordDataStats.arrayBytes(words.length, Integer.BYTES)
+                + WordDataStats.arrayBytes(table.length, Integer.BYTES);
+        for(int id = 0; id < size; id++)
+        {
+            String word = words[id];
+            int bytesPerChar = 1;
+            for(int index = 0; index < word.length(); index++)
+            {
+                if(word.charAt(index) > 0xFF)
+                {
+                    bytesPerChar = 2;
+                    break;
+                }
+            }
+            bytes += 24 + WordDataStats.arrayBytes((long)word.length() * bytesPerChar, 1);
+        }
+        return bytes;
+    }
+
+    /**
+     * Gets every word in id order. The list is a read only view of the dictionary, nothing is copied.
+     * @return A List of the words.
+     */
+    List<String> asList()
+    {
+        return new AbstractList<String>()
+        {
+            @Override
+            public String get(int index)
+            {
+                if(index >= size)
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+                return words[index];
+            }
+
+            @Override
+            public int size()
+            {
+                return size;
+            }
+        };
+    }
+
+    private void allocateTable(int minimumWords)
+    {
+        int capacity = Integer.highestOneBit(Math.max(16, minimumWords * 2 - 1)) << 1;
+        table = new int[capacity];
+        Arrays.fill(table, NO_ID);
+        mask = capacity - 1;
+    }
+
+    private void insert(int id)
+    {
+        int slot = hash(words[id]) & mask;
+        while(table[slot] != NO_ID)
+            slot = (slot + 1) & mask;
+        table[slot] = id;
+    }
+
+    private static int hash(String word)
+    {
+        // Spreads the bits of the String's hash since only the low bits pick a slot
+        int hash = word.hashCode() * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
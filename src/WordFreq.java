@@ -1,7 +1,18 @@
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
-import java.util.function.Consumer;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
 
 /**
  * Test the student lab concerning the application of Zipf's Law to literature.
@@ -19,7 +30,7 @@ public class WordFreq {
 
         zipf(
                 "Compute numbers for Zipf's law; x => show table of values.",
-                "[ table ]"
+                "[ table ] [ start-year end-year ]"
         ),
         count(
                 "Show #occurrences of a word.",
@@ -32,6 +43,30 @@ public class WordFreq {
         test(
                 "Run a multifaceted test program (all.csv)",
                 ""
+        ),
+        save(
+                "Write the data to a snapshot that loads much faster.",
+                "snapshot-file"
+        ),
+        top(
+                "Show the k most common words.",
+                "k [ start-year [ end-year ] ]"
+        ),
+        stats(
+                "Show load times, query latencies and memory use.",
+                "[ json ]"
+        ),
+        prefix(
+                "Show the words starting with some letters, most common first.",
+                "letters [ start-year [ end-year ] ]"
+        ),
+        export(
+                "Write every line to a file (default csv, in word order).",
+                "file [ csv | binary | text ] [ word | rank | loaded ]"
+        ),
+        delta(
+                "Show the k words whose rank rose and fell the most.",
+                "k start-year end-year start-year end-year"
         );
 
         private String hint;
@@ -55,7 +90,7 @@ public class WordFreq {
     /**
      * A table mapping command strings to methods
      */
-    private static Map< Command, Consumer< String[] > > cmds;
+    private static Map< Command, BiConsumer< String[], PrintWriter > > cmds;
 
     /**
      * Initialize the table with all commands.
@@ -66,6 +101,12 @@ public class WordFreq {
         cmds.put( Command.count, WordFreq::count );
         cmds.put( Command.rank, WordFreq::rank );
         cmds.put( Command.test, WordFreq::bigTest );
+        cmds.put( Command.save, WordFreq::save );
+        cmds.put( Command.top, WordFreq::top );
+        cmds.put( Command.stats, WordFreq::stats );
+        cmds.put( Command.prefix, WordFreq::prefix );
+        cmds.put( Command.export, WordFreq::export );
+        cmds.put( Command.delta, WordFreq::delta );
     }
 
     /*****************************************************************/
@@ -74,119 +115,320 @@ public class WordFreq {
      * Compute all the data, in log-log form, that would be useful
      * for plotting a graph to demonstrate Zipf's Law.
      * By default a measure of validity of the law is computed in the
-     * mean and standard deviation of the supposed plot points.
+     * mean and standard deviation of the supposed plot points, along
+     * with the slope and intercept of a straight line fit to them.
      *
-     * @param args singleton arg, if present, displays all the data.
+     * @param args an optional argument that, if present, displays all the
+     *             data, followed by an optional start and end year to only
+     *             consider words used in that period.
+     * @param out where the results are written
      */
-    private static void checkZipf( String[] args ) {
-        Collection< String > words = allWords.words();
-        int size = words.size();
-        long[] ranking = new long[ size ];
-        double[] diffsInLogs = new double[ size ];
-        words.forEach(
-                w ->
-                    ranking[ allWords.getRankFor( w ) - 1 ] =
-                                            allWords.getCountFor( w )
-        );
-        long word1Count = ranking[ 0 ]; // denominator for freq ratio
-        for ( int r = 1; r <= size; ++r ) {
-            long freq = ranking[ r - 1 ];
-            double logRank = Math.log( (double)r );
-            double logFreqRatio = Math.log( (double)freq / (double)word1Count );
-            if ( args.length > 1 ) {
-                System.out.println(
-                        r + ". " + freq + ": " +
-                        logRank + ", " + logFreqRatio
-                );
+    private static void checkZipf( String[] args, PrintWriter out ) {
+        int last = args.length;
+        long[] ranking;
+        try {
+            if ( last >= 3 && isInteger( args[ last - 2 ] ) &&
+                 isInteger( args[ last - 1 ] ) ) {
+                ranking = allWords.getRankedCounts(
+                        Integer.parseInt( args[ last - 2 ] ),
+                        Integer.parseInt( args[ last - 1 ] ) );
+                last -= 2;
             }
-            diffsInLogs[ r - 1 ] = logRank + logFreqRatio;
-        }
-        double mean = Arrays.stream( diffsInLogs ).average().getAsDouble();
-        double stdev = Math.sqrt(
-                            Arrays.stream( diffsInLogs )
-                                 .map( d -> Math.pow( d - mean, 2 ) )
-                                 .sum()
-                                 / ( size - 1 )
+            else {
+                ranking = allWords.getRankedCounts();
+            }
+        }
+        catch( NumberFormatException e ) {
+            out.println( "Years must be integer values." );
+            return;
+        }
+        if ( ranking.length < 2 ) {
+            out.println( "Not enough words to check Zipf's law." );
+            return;
+        }
+
+        if ( last > 1 ) {
+            ZipfAnalyzer.writeTable( ranking, out );
+        }
+        ZipfAnalyzer.Result result = ZipfAnalyzer.analyze( ranking );
+        out.println(
+                "\n mean difference " + result.mean +
+                "; std. dev. " + result.stdev
         );
-        System.out.println(
-                "\n mean difference " + mean +
-                "; std. dev. " + stdev
+        out.println(
+                " log-log fit slope " + result.slope +
+                "; intercept " + result.intercept
         );
     }
 
+    /**
+     * Is a string a whole number?
+     * @param s the string to check
+     * @return true if s can be parsed as an int
+     */
+    private static boolean isInteger( String s ) {
+        try {
+            Integer.parseInt( s );
+            return true;
+        }
+        catch( NumberFormatException e ) {
+            return false;
+        }
+    }
+
     /*****************************************************************/
 
     /**
      * How many times was a word used?
      * @param args (optional) starting year, ending year
+     * @param out where the results are written
      */
-    private static void count( String[] args ) {
+    private static void count( String[] args, PrintWriter out ) {
         String word = ( args.length < 2 ) ? "***" : args[ 1 ];
         try {
             switch ( args.length ) {
                 case 2:
-                    System.out.println(
+                    out.println(
                             "Count of " + word + ": " +
-                            allWords.getCountFor( word ) );
+                            allWords.getCountFor( word ) +
+                            errorBound( word, Integer.MIN_VALUE,
+                                        Integer.MAX_VALUE ) );
                     break;
                 case 3:
                     int year = Integer.parseInt( args[ 2 ] );
-                    System.out.println(
+                    out.println(
                             "Count of " + word + " in " + year + ": " +
-                            allWords.getCountFor( word, year ) );
+                            allWords.getCountFor( word, year ) +
+                            errorBound( word, year, year ) );
                     break;
                 case 4:
                     int year1 = Integer.parseInt( args[ 2 ] );
                     int year2 = Integer.parseInt( args[ 3 ] );
-                    System.out.println(
+                    out.println(
                             "Count of " + word +
                             " from " + year1 + '-' + year2 + ": " +
-                            allWords.getCountFor( word, year1, year2 ) );
+                            allWords.getCountFor( word, year1, year2 ) +
+                            errorBound( word, year1, year2 ) );
                     break;
                 default:
-                    System.out.println( "Incorrect number of arguments" );
+                    out.println( "Incorrect number of arguments" );
             }
         }
         catch( NumberFormatException e ) {
-            System.out.println( "Years must be integer values." );
+            out.println( "Years must be integer values." );
         }
     }
 
+    /**
+     * Describe how far off a count can be, for data that only keeps
+     * estimates.
+     * @param word the word that was counted
+     * @param startYear the first year of the count
+     * @param endYear the last year of the count
+     * @return nothing for an exact count, otherwise how much too high
+     *         it can be, in parentheses
+     */
+    private static String errorBound( String word, int startYear, int endYear ) {
+        long bound = allWords.getCountErrorBound( word, startYear, endYear );
+        return ( bound == 0 ) ? "" : " (at most " + bound + " too high)";
+    }
+
     /*****************************************************************/
 
     /**
      * What is the frequency rank of a word. (Top rank is 1.)
      * @param args (optional) starting year, ending year
+     * @param out where the results are written
      */
-    private static void rank( String[] args ) {
+    private static void rank( String[] args, PrintWriter out ) {
         String word = ( args.length < 2 ) ? "***" : args[ 1 ];
         try {
             switch ( args.length ) {
                 case 2:
-                    System.out.println(
+                    out.println(
                             "Rank of " + word + ": " +
                             allWords.getRankFor( word ) );
                     break;
                 case 3:
                     int year = Integer.parseInt( args[ 2 ] );
-                    System.out.println(
+                    out.println(
                             "Rank of " + word + " in " + year + ": " +
                             allWords.getRankFor( word, year ) );
                     break;
                 case 4:
                     int year1 = Integer.parseInt( args[ 2 ] );
                     int year2 = Integer.parseInt( args[ 3 ] );
-                    System.out.println(
+                    out.println(
                             "Rank of " + word +
                             " from " + year1 + '-' + year2 + ": " +
                             allWords.getRankFor( word, year1, year2 ) );
                     break;
                 default:
-                    System.out.println( "Incorrect number of arguments" );
+                    out.println( "Incorrect number of arguments" );
+            }
+        }
+        catch( NumberFormatException e ) {
+            out.println( "Years must be integer values." );
+        }
+    }
+
+    /*****************************************************************/
+
+    /**
+     * What are the most common words? (Top rank is 1.)
+     * @param args how many words, (optional) starting year, ending year
+     * @param out where the results are written
+     */
+    private static void top( String[] args, PrintWriter out ) {
+        try {
+            List< String > words;
+            int startYear = Integer.MIN_VALUE;
+            int endYear = Integer.MAX_VALUE;
+            switch ( args.length ) {
+                case 2:
+                    words = allWords.topWords( Integer.parseInt( args[ 1 ] ) );
+                    break;
+                case 3:
+                    startYear = endYear = Integer.parseInt( args[ 2 ] );
+                    words = allWords.topWords(
+                            Integer.parseInt( args[ 1 ] ), startYear, endYear );
+                    break;
+                case 4:
+                    startYear = Integer.parseInt( args[ 2 ] );
+                    endYear = Integer.parseInt( args[ 3 ] );
+                    words = allWords.topWords(
+                            Integer.parseInt( args[ 1 ] ), startYear, endYear );
+                    break;
+                default:
+                    out.println( "Incorrect number of arguments" );
+                    return;
+            }
+            long[] counts = allWords.getCountsFor( words, startYear, endYear );
+            for ( int r = 0; r < words.size(); ++r ) {
+                out.println(
+                        ( r + 1 ) + ". " + words.get( r ) + ": " + counts[ r ] );
+            }
+        }
+        catch( NumberFormatException e ) {
+            out.println( "k and years must be integer values." );
+        }
+    }
+
+    /*****************************************************************/
+
+    /**
+     * Which words moved up and down the ranks the most from one period
+     * to another?
+     * @param args k, then the starting and ending years of each period
+     * @param out where the results are written
+     */
+    private static void delta( String[] args, PrintWriter out ) {
+        if ( args.length != 6 ) {
+            out.println( "Incorrect number of arguments" );
+            return;
+        }
+        try {
+            int k = Integer.parseInt( args[ 1 ] );
+            int[] years = new int[ 4 ];
+            for ( int y = 0; y < years.length; ++y ) {
+                years[ y ] = Integer.parseInt( args[ y + 2 ] );
+            }
+            RankDelta delta = allWords.rankDelta(
+                    years[ 0 ], years[ 1 ], years[ 2 ], years[ 3 ], k );
+            String periods = " from " + years[ 0 ] + '-' + years[ 1 ] +
+                             " to " + years[ 2 ] + '-' + years[ 3 ] + ':';
+            out.println( "Biggest risers" + periods );
+            printMoves( delta.getRisers(), out );
+            out.println( "Biggest fallers" + periods );
+            printMoves( delta.getFallers(), out );
+        }
+        catch( NumberFormatException e ) {
+            out.println( "k and years must be integer values." );
+        }
+    }
+
+    /**
+     * Print each word's move, one per line.
+     * @param moves the words and their ranks in each period
+     * @param out where the results are written
+     */
+    private static void printMoves( List< RankDelta.Move > moves, PrintWriter out ) {
+        if ( moves.isEmpty() ) {
+            out.println( "(none)" );
+        }
+        for ( int m = 0; m < moves.size(); ++m ) {
+            RankDelta.Move move = moves.get( m );
+            out.printf( "%d. %s: %d -> %d (%+d)%n", m + 1, move.getWord(),
+                        move.getFromRank(), move.getToRank(),
+                        move.getChange() );
+        }
+    }
+
+    /*****************************************************************/
+
+    /**
+     * Which words start with some letters, and how common are they?
+     * Only the words that match are looked up, through the prefix index.
+     * @param args the letters, (optional) starting year, ending year
+     * @param out where the results are written
+     */
+    private static void prefix( String[] args, PrintWriter out ) {
+        try {
+            int startYear = Integer.MIN_VALUE;
+            int endYear = Integer.MAX_VALUE;
+            switch ( args.length ) {
+                case 2:
+                    break;
+                case 3:
+                    startYear = endYear = Integer.parseInt( args[ 2 ] );
+                    break;
+                case 4:
+                    startYear = Integer.parseInt( args[ 2 ] );
+                    endYear = Integer.parseInt( args[ 3 ] );
+                    break;
+                default:
+                    out.println( "Incorrect number of arguments" );
+                    return;
+            }
+            String letters = args[ 1 ];
+            List< String > words = allWords.wordsWithPrefix( letters );
+            long[] counts = allWords.getCountsFor( words, startYear, endYear );
+            int[] ranks;
+            if ( args.length == 2 ) {
+                ranks = new int[ words.size() ];
+                for ( int w = 0; w < ranks.length; ++w ) {
+                    ranks[ w ] = allWords.getRankFor( words.get( w ) );
+                }
+            }
+            else {
+                // All of the matches are ranked together, in one pass
+                ranks = allWords.getRanksFor( words, startYear, endYear );
+            }
+
+            // Ranks never tie, so sorting by rank puts the most common first
+            // (the unranked words sort to the front but are not shown)
+            Integer[] order = new Integer[ words.size() ];
+            for ( int w = 0; w < order.length; ++w ) {
+                order[ w ] = w;
+            }
+            Arrays.sort(
+                    order, ( a, b ) -> Integer.compare( ranks[ a ], ranks[ b ] ) );
+
+            String span = ( args.length == 2 ) ? "" :
+                    ( args.length == 3 ) ? " in " + startYear :
+                    " from " + startYear + '-' + endYear;
+            long total = allWords.getPrefixCount( letters, startYear, endYear );
+            out.println( words.size() + " words start with " + letters +
+                         span + ", used " + total + " times" );
+            for ( int w: order ) {
+                if ( counts[ w ] > 0 ) {
+                    out.println( "    #" + ranks[ w ] + " " + words.get( w ) +
+                                 ": " + counts[ w ] );
+                }
             }
         }
         catch( NumberFormatException e ) {
-            System.out.println( "Years must be integer values." );
+            out.println( "Years must be integer values." );
         }
     }
 
@@ -208,27 +450,28 @@ public class WordFreq {
      * various argument values. The values are appropriate for all.csv, and
      * a bit for short.csv, too.
      * @param args unused
+     * @param out where the results are written
      */
-    public static void bigTest( String[] args ) {
+    public static void bigTest( String[] args, PrintWriter out ) {
 
         for ( int y = 2004; y < 2010; ++y ) {
-            System.out.println( "Year " + y );
+            out.println( "Year " + y );
             for ( String w: TEST_WORDS ) {
-                System.out.println(
+                out.println(
                         "    " + w + ": " + allWords.getCountFor( w, y ) );
             }
         }
         for ( String w: TEST_WORDS ) {
-            System.out.println( "Overall for " + w + ": " +
+            out.println( "Overall for " + w + ": " +
                                 allWords.getCountFor( w, 0, 2100 ) );
         }
 
         for ( String word: TEST_WORDS ) {
-            System.out.println(
+            out.println(
                     "Rank of " + word + " is " + allWords.getRankFor( word ) );
         }
 
-        System.out.println( "These should be the top words" );
+        out.println( "These should be the top words" );
 
         for (
                 String word: new String[] {
@@ -236,21 +479,145 @@ public class WordFreq {
                 "it", "on", "from", "he", "this"
         }
                 ) {
-            System.out.println( word + " is #" + allWords.getRankFor( word ) );
+            out.println( word + " is #" + allWords.getRankFor( word ) );
         }
 
-        System.out.println();
-        for ( String word : TEST_WORDS_2 ) {
-            for ( int year = FIRST_YEAR;
-                  year < NEAR_FUTURE;
-                  year += YEAR_SPAN ) {
+        // Every word is ranked at once for each span of years, rather than
+        // going through the data once per word per span.
+        List< String > words2 = Arrays.asList( TEST_WORDS_2 );
+        int spans = ( NEAR_FUTURE - FIRST_YEAR + YEAR_SPAN - 1 ) / YEAR_SPAN;
+        int[][] spanRanks = new int[ spans ][];
+        for ( int span = 0; span < spans; ++span ) {
+            int year = FIRST_YEAR + span * YEAR_SPAN;
+            spanRanks[ span ] =
+                allWords.getRanksFor( words2, year, year + YEAR_SPAN - 1 );
+        }
+
+        out.println();
+        for ( int w = 0; w < TEST_WORDS_2.length; ++w ) {
+            for ( int span = 0; span < spans; ++span ) {
+                int year = FIRST_YEAR + span * YEAR_SPAN;
                 int yearEnd = year + YEAR_SPAN - 1;
-                System.out.println(
-                        "Rank of " + word + " from " + year +
+                out.println(
+                        "Rank of " + TEST_WORDS_2[ w ] + " from " + year +
                         " to " + yearEnd + " was " +
-                        allWords.getRankFor( word, year, yearEnd ) );
+                        spanRanks[ span ][ w ] );
+            }
+            out.println();
+        }
+    }
+
+    /*****************************************************************/
+
+    /**
+     * Save the data in a binary snapshot. The snapshot file can be given
+     * anywhere a data file name is expected.
+     * @param args the name of the snapshot file
+     * @param out where the results are written
+     */
+    private static void save( String[] args, PrintWriter out ) {
+        if ( args.length != 2 ) {
+            out.println( "Incorrect number of arguments" );
+        }
+        else if ( !( allWords instanceof WordDataImpl ) ) {
+            out.println( "This data cannot be saved as a snapshot." );
+        }
+        else {
+            try {
+                ( (WordDataImpl)allWords ).writeSnapshot( args[ 1 ] );
+                out.println( "Snapshot written to " + args[ 1 ] );
+            }
+            catch( IOException e ) {
+                out.println( "Could not write snapshot: " + e.getMessage() );
             }
-            System.out.println();
+        }
+    }
+
+    /*****************************************************************/
+
+    /**
+     * Write every line of the data to a file, streamed through one
+     * buffer. A csv export is in the 1-gram format, so it can be read
+     * back in.
+     * @param args the name of the file, (optional) format, order
+     * @param out where the results are written
+     */
+    private static void export( String[] args, PrintWriter out ) {
+        if ( args.length < 2 || args.length > 4 ) {
+            out.println( "Incorrect number of arguments" );
+            return;
+        }
+        if ( !( allWords instanceof WordDataExporter.Source ) ) {
+            out.println( "This data cannot be exported." );
+            return;
+        }
+
+        WordDataExporter.Format format = WordDataExporter.Format.CSV;
+        WordDataExporter.Order order = WordDataExporter.Order.WORD;
+        try {
+            if ( args.length > 2 ) {
+                format = WordDataExporter.Format.valueOf(
+                        args[ 2 ].toUpperCase() );
+            }
+        }
+        catch( IllegalArgumentException e ) {
+            out.println( "Format must be csv, binary or text." );
+            return;
+        }
+        try {
+            if ( args.length > 3 ) {
+                order = WordDataExporter.Order.valueOf(
+                        args[ 3 ].toUpperCase() );
+            }
+        }
+        catch( IllegalArgumentException e ) {
+            out.println( "Order must be word, rank or loaded." );
+            return;
+        }
+
+        try ( FileChannel file = FileChannel.open( Paths.get( args[ 1 ] ),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING ) ) {
+            WordDataExporter exporter = new WordDataExporter( file, format );
+            ( (WordDataExporter.Source)allWords ).export( exporter, order );
+            exporter.flush();
+            out.println( "Exported " + exporter.getWordsWritten() +
+                         " words (" + exporter.getLinesWritten() +
+                         " lines) to " + args[ 1 ] );
+        }
+        catch( IOException e ) {
+            out.println( "Could not export: " + e.getMessage() );
+        }
+    }
+
+    /*****************************************************************/
+
+    /**
+     * Show where the time and memory have gone: how long each phase of
+     * loading took, latencies of the count and rank queries run so far,
+     * an estimate of the memory the data holds and the rank cache counters.
+     * @param args an optional "json" to print one machine-readable line
+     * @param out where the results are written
+     */
+    private static void stats( String[] args, PrintWriter out ) {
+        if ( args.length > 2 ||
+             ( args.length == 2 && !args[ 1 ].equals( "json" ) ) ) {
+            out.println( "Incorrect number of arguments" );
+        }
+        else if ( allWords instanceof WordDataImpl ) {
+            ( (WordDataImpl)allWords ).writeStats( out, args.length == 2 );
+        }
+        else if ( allWords instanceof ShardedWordData ) {
+            ( (ShardedWordData)allWords ).writeStats( out, args.length == 2 );
+        }
+        else if ( allWords instanceof LazyWordData ) {
+            ( (LazyWordData)allWords ).writeStats( out, args.length == 2 );
+        }
+        else if ( allWords instanceof ApproximateWordData ) {
+            ( (ApproximateWordData)allWords ).writeStats( out, args.length == 2 );
+        }
+        else {
+            out.println( "This data does not keep statistics." );
         }
     }
 
@@ -280,36 +647,80 @@ public class WordFreq {
      * @param user the input stream (presumably standard input)
      */
     private static void commandCentral( Scanner user ) {
-        System.out.print( prompt );
-        String[] cmdLine = user.nextLine().split( "\\s" );
+        // Commands write to one buffered writer, which is flushed before
+        // the user is prompted again.
+        PrintWriter console = new PrintWriter(
+                new BufferedWriter( new OutputStreamWriter( System.out ), 1 << 16 ) );
+        console.print( prompt );
+        console.flush();
+        String cmdLine = user.nextLine();
+        while ( !isQuit( cmdLine ) ) {
+            execute( cmdLine, console );
+            console.print( prompt );
+            console.flush();
+            cmdLine = user.nextLine();
+        }
+    }
+
+    /**
+     * Is a command line the command to quit?
+     * @param cmdLine the command line
+     * @return true if its command is q
+     */
+    static boolean isQuit( String cmdLine ) {
+        String[] words = cmdLine.split( "\\s" );
+        return words.length > 0 && words[ 0 ].equals( "q" );
+    }
+
+    /**
+     * Run one command line, writing what it prints to the given writer.
+     * This is how both the console and the server run commands. The data
+     * is never changed by a command, so any number of command lines can
+     * be run at the same time on different threads.
+     * @param line the command line, the command followed by its arguments
+     * @param out where the results are written (it is not flushed)
+     */
+    static void execute( String line, PrintWriter out ) {
+        execute( line, out, c -> true );
+    }
+
+    /**
+     * Run one command line, with help only listing some of the commands.
+     * This is for callers that refuse the rest of the commands, such as
+     * the server, which only runs the ones that never write a file.
+     * @param line the command line, the command followed by its arguments
+     * @param out where the results are written (it is not flushed)
+     * @param listed which commands help lists
+     */
+    static void execute( String line, PrintWriter out,
+                         Predicate<Command> listed ) {
+        String[] cmdLine = line.split( "\\s" );
         String cmd = ( cmdLine.length == 0 ) ? "" : cmdLine[ 0 ];
-        while ( !cmd.equals( "q" ) ) {
-            if ( cmd.equals( "help" ) ) {
-                System.out.println();
-                for ( Command c : Command.values() ) {
-                    System.out.printf(
-                            "%8s %-35s -- %s\n",
-                            c, c.getProtocol(), c.getHint()
-                    );
+        if ( cmd.equals( "help" ) ) {
+            out.println();
+            for ( Command c : Command.values() ) {
+                if ( !listed.test( c ) ) {
+                    continue;
                 }
+                out.printf(
+                        "%8s %-35s -- %s\n",
+                        c, c.getProtocol(), c.getHint()
+                );
             }
-            else {
-                try {
-                    Command cmdKey = Command.valueOf( cmd );
-                    if ( cmds.containsKey( cmdKey ) ) {
-                        cmds.get( cmdKey ).accept( cmdLine );
-                    }
-                    else {
-                        throw new IllegalArgumentException();
-                    }
+        }
+        else {
+            try {
+                Command cmdKey = Command.valueOf( cmd );
+                if ( cmds.containsKey( cmdKey ) ) {
+                    cmds.get( cmdKey ).accept( cmdLine, out );
                 }
-                catch( IllegalArgumentException e ) {
-                    System.out.println( "No such command '" + cmd + "'." );
+                else {
+                    throw new IllegalArgumentException();
                 }
             }
-            System.out.print( prompt );
-            cmdLine = user.nextLine().split( "\\s" );
-            cmd = ( cmdLine.length == 0 ) ? "" : cmdLine[ 0 ];
+            catch( IllegalArgumentException e ) {
+                out.println( "No such command '" + cmd + "'." );
+            }
         }
     }
 
@@ -317,25 +728,177 @@ public class WordFreq {
 
     private static WordData allWords = null;
 
+    /**
+     * What takeOption returns for an option without a proper number
+     */
+    private static final int BAD_OPTION = -2;
+
+    /**
+     * Find an option followed by a number in the command line arguments
+     * and take both out of them.
+     * @param args the command line arguments, the option is removed
+     * @param option the name of the option, such as --serve
+     * @return the number after the option, -1 if the option isn't there,
+     *         or BAD_OPTION (after saying so) if it isn't followed by a
+     *         number
+     */
+    private static int takeOption( List< String > args, String option ) {
+        int at = args.indexOf( option );
+        if ( at < 0 ) {
+            return -1;
+        }
+        if ( at + 1 >= args.size() || !isInteger( args.get( at + 1 ) ) ||
+             Integer.parseInt( args.get( at + 1 ) ) < 0 ) {
+            System.out.println( option + " needs a number" );
+            return BAD_OPTION;
+        }
+        int value = Integer.parseInt( args.get( at + 1 ) );
+        args.subList( at, at + 2 ).clear();
+        return value;
+    }
+
+    /**
+     * Find an option followed by a name in the command line arguments
+     * and take both out of them.
+     * @param args the command line arguments, the option is removed
+     * @param option the name of the option, such as --batch
+     * @return the name after the option, null if the option isn't there,
+     *         or "" (after saying so) if it isn't followed by anything
+     */
+    private static String takeNameOption( List< String > args, String option ) {
+        int at = args.indexOf( option );
+        if ( at < 0 ) {
+            return null;
+        }
+        if ( at + 1 >= args.size() ) {
+            System.out.println( option + " needs a name" );
+            return "";
+        }
+        String value = args.get( at + 1 );
+        args.subList( at, at + 2 ).clear();
+        return value;
+    }
+
+    /**
+     * Run a script of commands from a file, or standard input for "-",
+     * and say how fast they ran (see WordFreqBatch).
+     * @param script the name of the file the commands are in
+     * @throws IOException if the commands cannot be read
+     */
+    private static void runBatch( String script ) throws IOException {
+        PrintWriter out = new PrintWriter(
+                new BufferedWriter( new OutputStreamWriter( System.out ), 1 << 16 ) );
+        WordFreqBatch batch = new WordFreqBatch(
+                Runtime.getRuntime().availableProcessors() );
+        try ( BufferedReader commands = script.equals( "-" ) ?
+                new BufferedReader( new InputStreamReader( System.in ) ) :
+                Files.newBufferedReader( Paths.get( script ) ) ) {
+            batch.run( commands, out );
+        }
+        // On standard error, so the results can be piped somewhere clean
+        System.err.printf( "Ran %d commands (%.0f commands/s)%n",
+                           batch.getCommandsRun(),
+                           batch.getCommandsPerSecond() );
+    }
+
     /**
      * Read in the data file to an internal structure, then process
-     * user commands.
-     * @param args if present, the name of the data file (User is prompted
-     *             if no args.)
-     * @throws FileNotFoundException if the file cannot be opened
+     * user commands, either from the console or, with the --serve option,
+     * from clients of a local HTTP server (see WordFreqServer).
+     * @param args if present, the name of the data file or of a snapshot
+     *             made by the save command (User is prompted if no args.)
+     *             Several data files can be given, or a directory or a
+     *             pattern like 'data/1gram-*.csv.gz', and they are all
+     *             read at the same time into one set of data.
+     *             It can be followed by --serve and a port number, and
+     *             by --shards and the number of shards to split the
+     *             words into (see ShardedWordData), or by --off-heap to
+     *             keep the years and counts out of the heap (see
+     *             OffHeapWordStore), or by --lazy to only read in the
+     *             words that are asked about (see LazyWordData).
+     *             Only one of those, or --approximate, can be given.
+     *             A snapshot is already read in lazily by --off-heap,
+     *             so that is what --lazy does with one, and with a
+     *             gzip compressed file or several files, which can't
+     *             be read lazily.
+     *             Compressed files are read without unpacking them
+     *             first (see NGramLoader).
+     *             With --approximate and a number of kilobytes (0 for
+     *             the default) the files are only read into sketches
+     *             of that size for each decade, which give counts that
+     *             can be a little too high and only rank the most
+     *             common words, but use the same memory however big
+     *             the data is (see ApproximateWordData).
+     *             With --batch and the name of a file of commands, or
+     *             - for standard input, the commands are run without
+     *             prompting, many at a time (see WordFreqBatch).
+     * @throws IOException if the file cannot be opened or the server
+     *                     cannot be started
      */
-    public static void main( String[] args ) throws FileNotFoundException {
+    public static void main( String[] args ) throws IOException {
+        List< String > rest = new ArrayList<>( Arrays.asList( args ) );
+        int port = takeOption( rest, "--serve" );
+        int shards = takeOption( rest, "--shards" );
+        boolean offHeap = rest.remove( "--off-heap" );
+        boolean lazy = rest.remove( "--lazy" );
+        int approximate = takeOption( rest, "--approximate" );
+        String script = takeNameOption( rest, "--batch" );
+        if ( port == BAD_OPTION || shards == BAD_OPTION ||
+             approximate == BAD_OPTION || "".equals( script ) ) {
+            return;
+        }
+        // Each of these is a different way of holding the data, so they
+        // can't be combined (--shards would quietly drop --off-heap)
+        int storageOptions = ( shards > 0 ? 1 : 0 ) + ( offHeap ? 1 : 0 ) +
+                             ( lazy ? 1 : 0 ) + ( approximate >= 0 ? 1 : 0 );
+        if ( storageOptions > 1 ) {
+            System.out.println( "Only one of --shards, --off-heap, --lazy" +
+                                " and --approximate can be given" );
+            return;
+        }
+        if ( script != null && rest.isEmpty() ) {
+            System.out.println( "--batch needs the data file to be given" );
+            return;
+        }
+
         try ( Scanner userIn = new Scanner( System.in ) ) {
-            String fileName = null;
-            if ( args.length == 0 ) {
+            List< String > fileNames = rest;
+            if ( rest.isEmpty() ) {
                 System.out.print( "Word data file: " );
-                fileName = userIn.nextLine();
+                fileNames = Collections.singletonList( userIn.nextLine() );
+            }
+
+            if ( approximate >= 0 ) {
+                int sketchBytes = ( approximate == 0 ) ?
+                        ApproximateWordData.DEFAULT_SKETCH_BYTES :
+                        (int)Math.min( Integer.MAX_VALUE, approximate * 1024L );
+                allWords = new ApproximateWordData( fileNames, sketchBytes,
+                        ApproximateWordData.DEFAULT_HEAVY_HITTERS );
+            }
+            else if ( shards > 0 ) {
+                allWords = new ShardedWordData( fileNames, shards );
+            }
+            else if ( lazy && fileNames.size() == 1 &&
+                      LazyWordData.canReadLazily( fileNames.get( 0 ) ) ) {
+                allWords = new LazyWordData( fileNames.get( 0 ) );
             }
             else {
-                fileName = args[ 0 ];
+                allWords = new WordDataImpl( fileNames, offHeap || lazy );
             }
 
-            allWords = new WordDataImpl( fileName );
+            if ( port >= 0 ) {
+                WordFreqServer server = new WordFreqServer( port );
+                Runtime.getRuntime().addShutdownHook( new Thread( server::stop ) );
+                server.start();
+                System.out.println( "Serving commands at http://localhost:" +
+                                    server.getPort() + "/ (Ctrl-C to stop)" );
+                return;
+            }
+
+            if ( script != null ) {
+                runBatch( script );
+                return;
+            }
 
             commandCentral( userIn );
         }
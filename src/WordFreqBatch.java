@@ -0,0 +1,200 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A WordFreqBatch runs a script of WordFreq commands, one per line, without prompting for them. The commands are read
+ * in windows of a few thousand, and the commands of a window are run at the same time on a pool of threads while what
+ * they print is written out in the order the commands were in.
+ * <br>
+ * Within a window the commands are started in order of their year range, so the commands that need the ranking of the
+ * same range run one after another. The first one to need the ranking computes it, the rest find it in the RankCache
+ * (or wait for it), and a range is finished with before so many other ranges have been ranked that it would be thrown
+ * out of the cache.
+ * <br>
+ * Blank lines and lines starting with # are skipped, and q ends the script early. The commands save, export, stats and
+ * test are not run alongside anything else: every command before them is finished first and none after them is started
+ * until they are done, so they see the same data and statistics they would on the console.
+ *
+ * @author Kevin Becker
+ */
+class WordFreqBatch
+{
+    // The most commands run at the same time, and the most results held before they are written out
+    static final int WINDOW_SIZE = 4096;
+    // Commands which write files or report on everything run so far
+    private static final Set<String> BARRIERS = Set.of("save", "export", "stats", "test");
+
+    private int threads;
+    private long commandsRun = 0;
+    private long nanosTaken = 0;
+
+    /**
+     * Constructs a new WordFreqBatch.
+     * @param threads the number of commands run at the same time.
+     */
+    WordFreqBatch(int threads)
+    {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Runs every command of a script.
+     * @param commands where the commands are read from, one per line.
+     * @param out where what the commands print is written, in the order of the commands. It is flushed at the end.
+     * @throws IOException if the commands cannot be read.
+     */
+    void run(BufferedReader commands, PrintWriter out) throws IOException
+    {
+        long startTime = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try
+        {
+            List<String> window = new ArrayList<>();
+            for(String line = commands.readLine(); line != null; line = commands.readLine())
+            {
+                String command = line.strip();
+                if(command.isEmpty() || command.startsWith("#"))
+                    continue;
+                if(WordFreq.isQuit(command))
+                    break;
+
+                if(BARRIERS.contains(command.split("\\s")[0]))
+                {
+                    runWindow(window, pool, out);
+                    WordFreq.execute(command, out);
+                    commandsRun++;
+                }
+                else
+                {
+                    window.add(command);
+                    if(window.size() == WINDOW_SIZE)
+                        runWindow(window, pool, out);
+                }
+            }
+            runWindow(window, pool, out);
+        }
+        finally
+        {
+            pool.shutdownNow();
+            out.flush();
+            nanosTaken += System.nanoTime() - startTime;
+        }
+    }
+
+    /**
+     * Runs a window of commands on the pool and writes what they print, in order. The window is cleared.
+     */
+    private void runWindow(List<String> window, ExecutorService pool, PrintWriter out)
+    {
+        // The commands are started grouped by year range, and in their order within a range
+        Integer[] startOrder = new Integer[window.size()];
+        long[] ranges = new long[window.size()];
+        for(int index = 0; index < startOrder.length; index++)
+        {
+            startOrder[index] = index;
+            ranges[index] = rangeKey(window.get(index));
+        }
+        Arrays.sort(startOrder, Comparator.<Integer>comparingLong(index -> ranges[index])
+                .thenComparingInt(index -> index));
+
+        List<Future<String>> results = new ArrayList<>(window.size());
+        for(int index = 0; index < window.size(); index++)
+            results.add(null);
+        for(int index : startOrder)
+        {
+            String command = window.get(index);
+            results.set(index, pool.submit(() ->
+            {
+                StringWriter printed = new StringWriter();
+                PrintWriter commandOut = new PrintWriter(printed);
+                WordFreq.execute(command, commandOut);
+                commandOut.flush();
+                return printed.toString();
+            }));
+        }
+
+        // Each result is written as soon as it and every command before it are done
+        for(Future<String> result : results)
+            out.write(printedBy(result));
+        commandsRun += window.size();
+        window.clear();
+    }
+
+    /**
+     * Waits for a command and gets what it printed.
+     */
+    private static String printedBy(Future<String> result)
+    {
+        try
+        {
+            return result.get();
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running the commands", e);
+        }
+        catch(ExecutionException e)
+        {
+            // The same as the server, the rest of the commands still run
+            return "The command failed: " + e.getCause() + System.lineSeparator();
+        }
+    }
+
+    /**
+     * Gets the year range of a command, as a single number that sorts the same ranges together. The years are the
+     * numbers after the command's first argument (after the command itself for zipf). A command without years has the
+     * range of all years, and one with a single year has just that year.
+     * @param command the command line.
+     * @return The start year in the high half and the end year in the low half.
+     */
+    static long rangeKey(String command)
+    {
+        String[] words = command.split("\\s+");
+        int first = words[0].equals(WordFreq.Command.zipf.name()) ? 1 : 2;
+        List<Integer> years = new ArrayList<>(2);
+        for(int index = first; index < words.length && years.size() < 2; index++)
+        {
+            try
+            {
+                years.add(Integer.parseInt(words[index]));
+            }
+            catch(NumberFormatException e)
+            {
+                // Not a year, such as zipf's table
+            }
+        }
+
+        int startYear = years.isEmpty() ? Integer.MIN_VALUE : years.get(0);
+        int endYear = years.isEmpty() ? Integer.MAX_VALUE : years.get(years.size() - 1);
+        return ((long)startYear << 32) | (endYear & 0xffffffffL);
+    }
+
+    /**
+     * @return The number of commands run so far.
+     */
+    long getCommandsRun()
+    {
+        return commandsRun;
+    }
+
+    /**
+     * Gets the number of commands run per second, counting the time spent reading them and writing their results.
+     * @return The commands run per second, or 0 if nothing has been run.
+     */
+    double getCommandsPerSecond()
+    {
+        return nanosTaken == 0 ? 0 : commandsRun / (nanosTaken / 1e9);
+    }
+}
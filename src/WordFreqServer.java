@@ -0,0 +1,177 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The WordFreqServer lets many clients run WordFreq commands on one loaded data set at the same time. It is a small
+ * HTTP server on the local machine, a command is sent either
+ * <ul>
+ *     <li>as the path of a GET request, one path segment per word of the command: <code>GET /count/the/1900/1999</code></li>
+ *     <li>as the body of a POST request, one command per line, which are run in order</li>
+ * </ul>
+ * and the response is exactly what the command would have printed on the console.
+ * <br>
+ * Only the commands which answer questions about the data can be run. Any page in a browser on this machine can send a
+ * GET to the server, so save and export, which write to whatever file they are given, and the long running test are
+ * refused.
+ * <br>
+ * Every request runs on its own thread: a virtual thread when the JVM has them (Java 21 and later), or a thread from a
+ * cached pool when it doesn't. Nothing is locked because commands only ever read the data, which is finished being
+ * built before the server is started.
+ *
+ * @author Kevin Becker
+ */
+class WordFreqServer
+{
+    // The number of connections that can be waiting to be accepted
+    private static final int BACKLOG = 256;
+    private static final int RESPONSE_BUFFER_SIZE = 1 << 16;
+    // The commands that only read the data and never write a file
+    private static final Set<String> QUERIES = Set.of("help", "zipf", "count", "rank", "top", "stats", "prefix",
+            "delta");
+
+    private HttpServer server;
+    private ExecutorService requestExecutor;
+
+    /**
+     * Constructs a new WordFreqServer, it doesn't take requests until it is started.
+     * @param port the port to listen on, or 0 for any free port.
+     * @throws IOException if the port cannot be bound.
+     */
+    WordFreqServer(int port) throws IOException
+    {
+        // Only clients on this machine can connect
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+        requestExecutor = newRequestExecutor();
+        server.setExecutor(requestExecutor);
+        server.createContext("/", this::handle);
+    }
+
+    /**
+     * Starts taking requests.
+     */
+    void start()
+    {
+        server.start();
+    }
+
+    /**
+     * Stops taking requests, letting the ones already running finish.
+     */
+    void stop()
+    {
+        server.stop(0);
+        requestExecutor.shutdown();
+    }
+
+    /**
+     * Gets the port the server is listening on.
+     * @return The port number.
+     */
+    int getPort()
+    {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Runs the commands of one request and streams what they print back as the response.
+     */
+    private void handle(HttpExchange exchange) throws IOException
+    {
+        try
+        {
+            List<String> commandLines = new ArrayList<>();
+            String method = exchange.getRequestMethod();
+            if(method.equals("GET"))
+            {
+                // The path is already decoded, so "/count/the/1900" is the command "count the 1900"
+                StringBuilder line = new StringBuilder();
+                for(String segment : exchange.getRequestURI().getPath().split("/"))
+                {
+                    if(segment.isEmpty())
+                        continue;
+                    if(line.length() > 0)
+                        line.append(' ');
+                    line.append(segment);
+                }
+                // The root path gets the help
+                commandLines.add(line.length() == 0 ? "help" : line.toString());
+            }
+            else if(method.equals("POST"))
+            {
+                BufferedReader body = new BufferedReader(
+                        new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8));
+                for(String line = body.readLine(); line != null; line = body.readLine())
+                {
+                    if(!line.isBlank())
+                        commandLines.add(line.strip());
+                }
+            }
+            else
+            {
+                exchange.getResponseHeaders().set("Allow", "GET, POST");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            // A length of 0 means the response is streamed, so a big zipf table is never held in memory
+            exchange.sendResponseHeaders(200, 0);
+            PrintWriter out = new PrintWriter(new BufferedWriter(
+                    new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), RESPONSE_BUFFER_SIZE));
+            try
+            {
+                for(String line : commandLines)
+                {
+                    String command = line.split("\\s")[0];
+                    // help only lists what can be run here
+                    if(QUERIES.contains(command))
+                        WordFreq.execute(line, out, c -> QUERIES.contains(c.name()));
+                    else
+                        out.println("The command '" + command + "' can't be run over HTTP.");
+                }
+            }
+            catch(RuntimeException e)
+            {
+                // The status has already been sent, so the best that can be done is to say what went wrong
+                out.println("The command failed: " + e);
+            }
+            out.flush();
+        }
+        finally
+        {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Makes the executor requests are run on. Virtual threads are only in Java 21 and later, so they are looked up by
+     * name and a cached thread pool is used instead on older JVMs.
+     * @return An ExecutorService which runs each request on its own thread.
+     */
+    private static ExecutorService newRequestExecutor()
+    {
+        try
+        {
+            return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch(ReflectiveOperationException e)
+        {
+            return Executors.newCachedThreadPool();
+        }
+    }
+}
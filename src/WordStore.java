@@ -0,0 +1,450 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The WordStore keeps all of the year data of every word in a few flat primitive arrays. Each word has an id from a
+ * WordDictionary and owns one contiguous block of lines in the year, count and prefix sum columns:
+ * <pre>
+ *     lines of word id  = lineOffsets[id] to lineOffsets[id + 1] - 1
+ *     years[line]       = a year the word has data for, sorted within the word
+ *     counts[line]      = the number of occurrences in that year
+ *     prefixSums[line]  = the sum of counts[0] to counts[line - 1]
+ * </pre>
+ * Because the prefix sums run across every word, the count of any word over any range of years is two binary searches
+ * and one subtraction. There are no per-word objects and nothing is boxed.
+ *
+ * @author Kevin Becker
+ */
+class WordStore
+{
+    private WordDictionary dictionary;
+    private int[] lineOffsets;
+    private int[] years;
+    private long[] counts;
+    private long[] prefixSums;
+
+    /**
+     * Constructs a WordStore out of columns that are already built (such as from a snapshot). The arrays are used as
+     * is, not copied.
+     * @param dictionary the ids of the words.
+     * @param lineOffsets the first line of each word id, followed by the number of lines.
+     * @param years the years of each line, sorted within each word.
+     * @param counts the number of occurrences of each line.
+     * @param prefixSums the cumulative sums of counts, one longer than counts and starting at 0.
+     */
+    WordStore(WordDictionary dictionary, int[] lineOffsets, int[] years, long[] counts, long[] prefixSums)
+    {
+        this.dictionary = dictionary;
+        this.lineOffsets = lineOffsets;
+        this.years = years;
+        this.counts = counts;
+        this.prefixSums = prefixSums;
+    }
+
+    /**
+     * Constructs a WordStore whose year and count columns are kept somewhere else by a subclass, which has to override
+     * every method that reads them.
+     * @param dictionary the ids of the words.
+     * @param lineOffsets the first line of each word id, followed by the number of lines.
+     */
+    WordStore(WordDictionary dictionary, int[] lineOffsets)
+    {
+        this.dictionary = dictionary;
+        this.lineOffsets = lineOffsets;
+    }
+
+    /**
+     * Gets the number of words in the store.
+     * @return The number of words, ids run from 0 to one less than this.
+     */
+    int wordCount()
+    {
+        return dictionary.size();
+    }
+
+    /**
+     * Gets the id of a word.
+     * @param word the word to be looked up, it must already be lower case.
+     * @return The id of the word, or -1 if it isn't in the store.
+     */
+    int idOf(String word)
+    {
+        return dictionary.idOf(word);
+    }
+
+    /**
+     * Gets the word with an id.
+     * @param id the id of the word.
+     * @return The word.
+     */
+    String wordOf(int id)
+    {
+        return dictionary.wordOf(id);
+    }
+
+    /**
+     * Gets the dictionary of the words in the store.
+     * @return The WordDictionary.
+     */
+    WordDictionary getDictionary()
+    {
+        return dictionary;
+    }
+
+    /**
+     * Gets the number of occurrences of a word for all of the years it has data for.
+     * @param id the id of the word.
+     * @return The number of occurrences.
+     */
+    long getCount(int id)
+    {
+        return prefixSums[lineOffsets[id + 1]] - prefixSums[lineOffsets[id]];
+    }
+
+    /**
+     * Gets the number of occurrences of a word in a single year.
+     * @param id the id of the word.
+     * @param year the year to be looked up.
+     * @return The number of occurrences in the year, 0 if the word has no data for it.
+     */
+    long getCount(int id, int year)
+    {
+        int line = Arrays.binarySearch(years, lineOffsets[id], lineOffsets[id + 1], year);
+        return line >= 0 ? counts[line] : 0;
+    }
+
+    /**
+     * Gets the number of occurrences of a word in a range of years.
+     * @param id the id of the word.
+     * @param startYear the first year of the range.
+     * @param endYear the last year of the range.
+     * @return The number of occurrences in the range.
+     */
+    long getCount(int id, int startYear, int endYear)
+    {
+        if(startYear > endYear)
+            return 0;
+
+        // The first line with a year >= startYear and the first line with a year > endYear, the difference of the
+        // prefix sums at those two lines is the total for the range
+        int from = lowerBound(id, startYear);
+        int to = endYear == Integer.MAX_VALUE ? lineOffsets[id + 1] : lowerBound(id, endYear + 1);
+
+        return prefixSums[to] - prefixSums[from];
+    }
+
+    /**
+     * Writes the count of a word for every year of a range into an array, with one binary search to find the first
+     * year and then a single pass over the word's lines. Nothing is allocated.
+     * @param id the id of the word.
+     * @param startYear the first year of the range.
+     * @param endYear the last year of the range.
+     * @param out gets the count of year y at out[offset + y - startYear], years with no data get 0.
+     * @param offset where the range starts in out.
+     */
+    void fillSeries(int id, int startYear, int endYear, long[] out, int offset)
+    {
+        if(startYear > endYear)
+            return;
+
+        Arrays.fill(out, offset, offset + (endYear - startYear) + 1, 0);
+        int end = endLine(id);
+        for(int line = lowerBound(id, startYear); line < end; line++)
+        {
+            int year = yearOf(line);
+            if(year > endYear)
+                break;
+            out[offset + (year - startYear)] = countOf(line);
+        }
+    }
+
+    /**
+     * Finds the first line of a word with a year greater than or equal to a year.
+     * @param id the id of the word.
+     * @param year the year to search for.
+     * @return The first line of the word with a year >= year, or the line after the word's last line.
+     */
+    int lowerBound(int id, int year)
+    {
+        int line = Arrays.binarySearch(years, lineOffsets[id], lineOffsets[id + 1], year);
+        return line >= 0 ? line : -(line + 1);
+    }
+
+    /**
+     * Gets the first line of a word.
+     * @param id the id of the word.
+     * @return The index of the word's first line.
+     */
+    int firstLine(int id)
+    {
+        return lineOffsets[id];
+    }
+
+    /**
+     * Gets the line after the last line of a word.
+     * @param id the id of the word.
+     * @return The index after the word's last line.
+     */
+    int endLine(int id)
+    {
+        return lineOffsets[id + 1];
+    }
+
+    /**
+     * Gets the year of a line.
+     * @param line the index of the line.
+     * @return The year.
+     */
+    int yearOf(int line)
+    {
+        return years[line];
+    }
+
+    /**
+     * Gets the number of occurrences of a line.
+     * @param line the index of the line.
+     * @return The number of occurrences.
+     */
+    long countOf(int line)
+    {
+        return counts[line];
+    }
+
+    /**
+     * Copies some of the words into a store of their own. The words get new ids, in the order they are given, and
+     * keep all of their year data.
+     * @param ids the ids of the words to copy.
+     * @return A new WordStore holding only those words.
+     */
+    WordStore subset(int[] ids)
+    {
+        String[] words = new String[ids.length];
+        int[] subsetOffsets = new int[ids.length + 1];
+        for(int index = 0; index < ids.length; index++)
+        {
+            words[index] = wordOf(ids[index]);
+            subsetOffsets[index + 1] = subsetOffsets[index] + (endLine(ids[index]) - firstLine(ids[index]));
+        }
+
+        int lines = subsetOffsets[ids.length];
+        int[] subsetYears = new int[lines];
+        long[] subsetCounts = new long[lines];
+        for(int index = 0; index < ids.length; index++)
+        {
+            // Goes through yearOf and countOf so that it works for any kind of store
+            int to = subsetOffsets[index];
+            for(int line = firstLine(ids[index]); line < endLine(ids[index]); line++, to++)
+            {
+                subsetYears[to] = yearOf(line);
+                subsetCounts[to] = countOf(line);
+            }
+        }
+
+        long[] subsetPrefixSums = new long[lines + 1];
+        for(int line = 0; line < lines; line++)
+            subsetPrefixSums[line + 1] = subsetPrefixSums[line] + subsetCounts[line];
+
+        return new WordStore(new WordDictionary(words), subsetOffsets, subsetYears, subsetCounts, subsetPrefixSums);
+    }
+
+    /**
+     * Estimates the bytes each part of the store holds on the heap.
+     * @return The estimated size in bytes of each part, by name.
+     */
+    Map<String, Long> estimateBytes()
+    {
+        Map<String, Long> parts = new LinkedHashMap<>();
+        parts.put("word dictionary", dictionary.estimateBytes());
+        parts.put("line offsets", WordDataStats.arrayBytes(lineOffsets.length, Integer.BYTES));
+        parts.put("years", WordDataStats.arrayBytes(years.length, Integer.BYTES));
+        parts.put("counts", WordDataStats.arrayBytes(counts.length, Long.BYTES));
+        parts.put("prefix sums", WordDataStats.arrayBytes(prefixSums.length, Long.BYTES));
+        return parts;
+    }
+
+    /**
+     * Gets the number of lines (word and year pairs) in the store.
+     * @return The number of lines.
+     */
+    int lineCount()
+    {
+        return lineOffsets[lineOffsets.length - 1];
+    }
+
+    /**
+     * Gets the first line of every word. Entry i is the first line of word id i, and the array is one longer than the
+     * number of words so that its last entry is the number of lines. The array is the store's own, not a copy, so it
+     * must not be changed.
+     * @return The first line of each word id, followed by the number of lines.
+     */
+    int[] getLineOffsets()
+    {
+        return lineOffsets;
+    }
+
+    /**
+     * A Builder collects the parsed chunks of a 1-gram file and turns them into a WordStore. Chunks must be added in
+     * the order they appear in the file. If a word has more than one line for the same year, the first line is used
+     * and the rest are counted as duplicates.
+     */
+    static class Builder
+    {
+        private WordDictionary dictionary = new WordDictionary();
+        private List<ParsedChunk> chunks = new ArrayList<>();
+        // The word id of every run of every chunk
+        private List<int[]> chunkRunIds = new ArrayList<>();
+        private int[] linesPerWord = new int[16];
+        private long lineCount = 0;
+        private long totalOccurrences = 0;
+        private int duplicateYears = 0;
+
+        /**
+         * Adds the next chunk of the file.
+         * @param chunk the parsed chunk.
+         * @return This Builder.
+         */
+        Builder add(ParsedChunk chunk)
+        {
+            int[] runIds = new int[chunk.getRunCount()];
+
+            for(int run = 0; run < chunk.getRunCount(); run++)
+            {
+                int id = dictionary.add(chunk.getRunWord(run));
+                runIds[run] = id;
+
+                if(id >= linesPerWord.length)
+                    linesPerWord = Arrays.copyOf(linesPerWord, Math.max(id + 1, linesPerWord.length * 2));
+                linesPerWord[id] += chunk.getRunEnd(run) - chunk.getRunStart(run);
+            }
+
+            for(int line = 0; line < chunk.getLineCount(); line++)
+                totalOccurrences += chunk.getCount(line);
+            lineCount += chunk.getLineCount();
+            if(lineCount > Integer.MAX_VALUE - 1)
+                throw new IllegalStateException("Too many lines to fit in a WordStore");
+
+            chunks.add(chunk);
+            chunkRunIds.add(runIds);
+            return this;
+        }
+
+        /**
+         * Builds the WordStore. Each word's lines are gathered together, sorted by year and have their duplicate years
+         * removed, then the prefix sums are computed.
+         * @return The WordStore.
+         */
+        WordStore build()
+        {
+            int wordCount = dictionary.size();
+            dictionary.trimToSize();
+
+            int[] lineOffsets = new int[wordCount + 1];
+            for(int id = 0; id < wordCount; id++)
+                lineOffsets[id + 1] = lineOffsets[id] + linesPerWord[id];
+
+            // Scatters every line to its word's block, keeping the order of the file within each block
+            int[] years = new int[(int)lineCount];
+            long[] counts = new long[(int)lineCount];
+            int[] next = Arrays.copyOf(lineOffsets, wordCount);
+            for(int index = 0; index < chunks.size(); index++)
+            {
+                ParsedChunk chunk = chunks.get(index);
+                int[] runIds = chunkRunIds.get(index);
+                for(int run = 0; run < runIds.length; run++)
+                {
+                    for(int line = chunk.getRunStart(run); line < chunk.getRunEnd(run); line++)
+                    {
+                        int at = next[runIds[run]]++;
+                        years[at] = chunk.getYear(line);
+                        counts[at] = chunk.getCount(line);
+                    }
+                }
+            }
+            chunks = null;
+            chunkRunIds = null;
+
+            // Sorts each block by year and moves it down over any duplicates that were dropped before it
+            int write = 0;
+            for(int id = 0; id < wordCount; id++)
+            {
+                int start = lineOffsets[id];
+                int end = lineOffsets[id + 1];
+                sortByYear(years, counts, start, end);
+
+                lineOffsets[id] = write;
+                for(int line = start; line < end; line++)
+                {
+                    if(line > start && years[line] == years[line - 1])
+                    {
+                        duplicateYears++;
+                        continue;
+                    }
+                    years[write] = years[line];
+                    counts[write] = counts[line];
+                    write++;
+                }
+            }
+            lineOffsets[wordCount] = write;
+
+            if(write != years.length)
+            {
+                years = Arrays.copyOf(years, write);
+                counts = Arrays.copyOf(counts, write);
+            }
+
+            long[] prefixSums = new long[write + 1];
+            for(int line = 0; line < write; line++)
+                prefixSums[line + 1] = prefixSums[line] + counts[line];
+
+            return new WordStore(dictionary, lineOffsets, years, counts, prefixSums);
+        }
+
+        /**
+         * Gets the sum of the occurrences of every line added, including the duplicate years.
+         * @return The total number of occurrences.
+         */
+        long getTotalOccurrences()
+        {
+            return totalOccurrences;
+        }
+
+        /**
+         * Gets the number of lines that were dropped because their word already had data for the year. This is only
+         * known once build has been called.
+         * @return The number of duplicate years.
+         */
+        int getDuplicateYears()
+        {
+            return duplicateYears;
+        }
+
+        /**
+         * Stable sorts a block of lines by year, so that the first of any duplicate years stays first. The 1-gram
+         * files almost always list a word's years in order already, which is checked before doing any sorting.
+         */
+        private static void sortByYear(int[] years, long[] counts, int start, int end)
+        {
+            int line = start + 1;
+            while(line < end && years[line - 1] <= years[line])
+                line++;
+            if(line >= end)
+                return;
+
+            // Packs each year with its position so that sorting the keys sorts by year and keeps equal years in order
+            long[] keys = new long[end - start];
+            long[] countsCopy = Arrays.copyOfRange(counts, start, end);
+            for(int index = 0; index < keys.length; index++)
+                keys[index] = ((long)years[start + index] << 32) | index;
+            Arrays.sort(keys);
+
+            for(int index = 0; index < keys.length; index++)
+            {
+                years[start + index] = (int)(keys[index] >> 32);
+                counts[start + index] = countsCopy[(int)keys[index]];
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+import java.io.PrintWriter;
+import java.util.stream.IntStream;
+
+/**
+ * The ZipfAnalyzer measures how well word counts follow Zipf's law, which says a word's count is proportional to one
+ * over its rank. If it holds then log(rank) + log(count / top count) is close to 0 for every word, and a straight line
+ * fit of log(count / top count) against log(rank) has a slope close to -1.
+ * <br>
+ * Everything is computed in a single pass over an array of counts that is already in rank order. The mean and standard
+ * deviation use Welford's algorithm and the line fit keeps running co-moments, so there is no second pass over the
+ * differences. Big arrays are split into parts which are summarized in parallel and then combined.
+ *
+ * @author Kevin Becker
+ */
+class ZipfAnalyzer
+{
+    // Arrays at least this long are summarized in parallel
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    /**
+     * The result of a Zipf analysis.
+     */
+    static class Result
+    {
+        // The number of ranks that were analyzed
+        long count;
+        // The mean and (sample) standard deviation of log(rank) + log(count / top count)
+        double mean;
+        double stdev;
+        // The least squares line log(count / top count) = slope * log(rank) + intercept
+        double slope;
+        double intercept;
+    }
+
+    /**
+     * Analyzes counts that are in rank order.
+     * @param rankedCounts the count of each rank, rankedCounts[0] is the count of the word ranked 1.
+     * @return The Result of the analysis.
+     */
+    static Result analyze(long[] rankedCounts)
+    {
+        int size = rankedCounts.length;
+        Moments moments;
+
+        if(size < PARALLEL_THRESHOLD)
+            moments = Moments.of(rankedCounts, 0, size);
+        else
+        {
+            int parts = Runtime.getRuntime().availableProcessors() * 4;
+            moments = IntStream.range(0, parts)
+                    .parallel()
+                    .mapToObj(part -> Moments.of(rankedCounts,
+                            (int)((long)size * part / parts), (int)((long)size * (part + 1) / parts)))
+                    .reduce(Moments::combine)
+                    .get();
+        }
+
+        Result result = new Result();
+        result.count = moments.count;
+        result.mean = moments.meanDiff;
+        result.stdev = Math.sqrt(moments.diffM2 / (moments.count - 1));
+        result.slope = moments.coXY / moments.coXX;
+        result.intercept = moments.meanY - result.slope * moments.meanX;
+        return result;
+    }
+
+    /**
+     * Writes a row for every rank in the style "<em>rank</em>. <em>count</em>: <em>log rank</em>, <em>log ratio</em>".
+     * @param rankedCounts the count of each rank, rankedCounts[0] is the count of the word ranked 1.
+     * @param out where the table is written, it is not flushed.
+     */
+    static void writeTable(long[] rankedCounts, PrintWriter out)
+    {
+        if(rankedCounts.length == 0)
+            return;
+
+        long word1Count = rankedCounts[0];
+        for(int rank = 1; rank <= rankedCounts.length; rank++)
+        {
+            long freq = rankedCounts[rank - 1];
+            out.print(rank);
+            out.print(". ");
+            out.print(freq);
+            out.print(": ");
+            out.print(Math.log(rank));
+            out.print(", ");
+            out.println(Math.log((double)freq / (double)word1Count));
+        }
+    }
+
+    /**
+     * Running moments of part of the ranks. x is log(rank), y is log(count / top count) and the difference is x + y.
+     */
+    private static class Moments
+    {
+        long count = 0;
+        double meanDiff = 0;
+        double diffM2 = 0;
+        double meanX = 0;
+        double meanY = 0;
+        double coXX = 0;
+        double coXY = 0;
+
+        /**
+         * Computes the moments of the ranks from one index up to another.
+         */
+        static Moments of(long[] rankedCounts, int from, int to)
+        {
+            Moments moments = new Moments();
+            double word1Count = rankedCounts[0];
+
+            for(int index = from; index < to; index++)
+            {
+                double x = Math.log(index + 1.0);
+                double y = Math.log((double)rankedCounts[index] / word1Count);
+                moments.add(x, y);
+            }
+
+            return moments;
+        }
+
+        /**
+         * Welford's update for one more point.
+         */
+        void add(double x, double y)
+        {
+            count++;
+
+            double diff = x + y;
+            double delta = diff - meanDiff;
+            meanDiff += delta / count;
+            diffM2 += delta * (diff - meanDiff);
+
+            double deltaX = x - meanX;
+            meanX += deltaX / count;
+            meanY += (y - meanY) / count;
+            coXX += deltaX * (x - meanX);
+            coXY += deltaX * (y - meanY);
+        }
+
+        /**
+         * Chan's formulas for combining the moments of two parts.
+         */
+        Moments combine(Moments other)
+        {
+            if(other.count == 0)
+                return this;
+            if(count == 0)
+                return other;
+
+            Moments combined = new Moments();
+            combined.count = count + other.count;
+            double weight = (double)count * other.count / combined.count;
+
+            double delta = other.meanDiff - meanDiff;
+            combined.meanDiff = meanDiff + delta * other.count / combined.count;
+            combined.diffM2 = diffM2 + other.diffM2 + delta * delta * weight;
+
+            double deltaX = other.meanX - meanX;
+            double deltaY = other.meanY - meanY;
+            combined.meanX = meanX + deltaX * other.count / combined.count;
+            combined.meanY = meanY + deltaY * other.count / combined.count;
+            combined.coXX = coXX + other.coXX + deltaX * deltaX * weight;
+            combined.coXY = coXY + other.coXY + deltaX * deltaY * weight;
+
+            return combined;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests the byte level parsing of 1-gram lines.
+ *
+ * @author Kevin Becker
+ */
+class ParsedChunkTest
+{
+    /**
+     * Parses some text as a whole block.
+     */
+    private static ParsedChunk parse(String text)
+    {
+        return ParsedChunk.parse(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void linesOfOneWordAreOneRun()
+    {
+        ParsedChunk chunk = parse("Apple, 1900, 5\nApple, 1901, 7\nbanana, -12, 3\n");
+
+        assertEquals(3, chunk.getLineCount());
+        assertEquals(2, chunk.getRunCount());
+        assertEquals("apple", chunk.getRunWord(0));
+        assertEquals(0, chunk.getRunStart(0));
+        assertEquals(2, chunk.getRunEnd(0));
+        assertEquals("banana", chunk.getRunWord(1));
+        assertEquals(1901, chunk.getYear(1));
+        assertEquals(7, chunk.getCount(1));
+        assertEquals(-12, chunk.getYear(2));
+        assertEquals(3, chunk.getCount(2));
+    }
+
+    @Test
+    void windowsLineEndingsAndBlankLinesAreSkipped()
+    {
+        ParsedChunk chunk = parse("a, 1900, 5\r\n\r\n\nb, 1901, 6  \r\n\nc,1902,7");
+
+        assertEquals(3, chunk.getLineCount());
+        assertEquals("b", chunk.getRunWord(1));
+        assertEquals(1901, chunk.getYear(1));
+        assertEquals(6, chunk.getCount(1));
+        assertEquals(7, chunk.getCount(2));
+    }
+
+    @Test
+    void largestValuesAreRead()
+    {
+        ParsedChunk chunk = parse("a, 2147483647, 9223372036854775807\n");
+
+        assertEquals(Integer.MAX_VALUE, chunk.getYear(0));
+        assertEquals(Long.MAX_VALUE, chunk.getCount(0));
+    }
+
+    @Test
+    void malformedLinesAreRejected()
+    {
+        assertThrows(IllegalArgumentException.class, () -> parse("a 1900 5\n"));
+        assertThrows(IllegalArgumentException.class, () -> parse("a, 1900\n"));
+        assertThrows(IllegalArgumentException.class, () -> parse("a, , 5\n"));
+        assertThrows(IllegalArgumentException.class, () -> parse("a, -, 5\n"));
+        assertThrows(IllegalArgumentException.class, () -> parse("a, 1900, \n"));
+        assertThrows(IllegalArgumentException.class, () -> parse("a, nineteen, 5\n"));
+    }
+
+    @Test
+    void overflowingYearsAreRejected()
+    {
+        assertThrows(IllegalArgumentException.class, () -> parse("a, 2147483648, 5\n"));
+        // Twenty or more digits would wrap a long if they were only checked at the end
+        assertThrows(IllegalArgumentException.class, () -> parse("a, 99999999999999999999999, 5\n"));
+    }
+
+    @Test
+    void overflowingCountsAreRejected()
+    {
+        assertThrows(IllegalArgumentException.class, () -> parse("a, 1900, 9223372036854775808\n"));
+        assertThrows(IllegalArgumentException.class, () -> parse("a, 1900, 99999999999999999999999\n"));
+    }
+}
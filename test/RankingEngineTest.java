@@ -0,0 +1,129 @@
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that every way the RankingEngine ranks words agrees with ranking them by brute force.
+ *
+ * @author Kevin Becker
+ */
+class RankingEngineTest
+{
+    /**
+     * Builds a store out of some 1-gram text.
+     */
+    private static WordStore storeOf(String text)
+    {
+        return new WordStore.Builder()
+                .add(ParsedChunk.parse(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8))))
+                .build();
+    }
+
+    /**
+     * Makes a store of random words with few distinct counts, so there are plenty of ties.
+     */
+    private static WordStore randomStore(int words, long seed)
+    {
+        Random random = new Random(seed);
+        StringBuilder text = new StringBuilder();
+        for(int word = 0; word < words; word++)
+        {
+            for(int year = 1900; year < 1910; year++)
+            {
+                if(random.nextInt(3) != 0)
+                    text.append("w").append(word).append(", ").append(year).append(", ").append(random.nextInt(4))
+                            .append('\n');
+            }
+        }
+        return storeOf(text.toString());
+    }
+
+    /**
+     * Ranks a word by comparing it with every other word.
+     */
+    private static int bruteForceRank(WordStore store, int targetId, int startYear, int endYear)
+    {
+        long targetCount = store.getCount(targetId, startYear, endYear);
+        int rank = 1;
+        for(int id = 0; id < store.wordCount(); id++)
+        {
+            long count = store.getCount(id, startYear, endYear);
+            if(count > targetCount || (count == targetCount && id < targetId))
+                rank++;
+        }
+        return rank;
+    }
+
+    @Test
+    void tiesGoToTheLowerId()
+    {
+        assertTrue(RankingEngine.beats(5, 1, 5, 2));
+        assertFalse(RankingEngine.beats(5, 2, 5, 1));
+        assertTrue(RankingEngine.beats(6, 9, 5, 1));
+        assertFalse(RankingEngine.beats(5, 1, 5, 1));
+
+        // b and c are used as often as each other, b was read first
+        WordStore store = storeOf("b, 1900, 3\nc, 1900, 3\na, 1900, 4\n");
+        RankingEngine engine = new RankingEngine(store);
+        assertEquals(1, engine.rankOf(store.idOf("a"), 1900, 1900));
+        assertEquals(2, engine.rankOf(store.idOf("b"), 1900, 1900));
+        assertEquals(3, engine.rankOf(store.idOf("c"), 1900, 1900));
+        assertArrayEquals(new int[]{store.idOf("a"), store.idOf("b"), store.idOf("c")},
+                engine.topIds(3, 1900, 1900));
+    }
+
+    @Test
+    void everyWayOfRankingAgreesWithBruteForce()
+    {
+        WordStore store = randomStore(300, 7);
+        RankingEngine engine = new RankingEngine(store);
+        int[] allIds = new int[store.wordCount()];
+        for(int id = 0; id < allIds.length; id++)
+            allIds[id] = id;
+
+        int[][] ranges = {{1900, 1909}, {1903, 1903}, {1905, 1907}, {1800, 1850}};
+        for(int[] range : ranges)
+        {
+            int[] expected = new int[store.wordCount()];
+            for(int id = 0; id < expected.length; id++)
+            {
+                expected[id] = bruteForceRank(store, id, range[0], range[1]);
+                assertEquals(expected[id], engine.rankOf(id, range[0], range[1]));
+            }
+            assertArrayEquals(expected, engine.ranksOf(allIds, range[0], range[1]));
+            assertArrayEquals(expected, engine.rankAll(range[0], range[1]));
+
+            int[] top = engine.topIds(10, range[0], range[1]);
+            for(int index = 0; index < top.length; index++)
+                assertEquals(index + 1, expected[top[index]]);
+        }
+    }
+
+    @Test
+    void ranksOfASubsetInAnyOrder()
+    {
+        WordStore store = randomStore(100, 11);
+        RankingEngine engine = new RankingEngine(store);
+        int[] targets = {42, 3, 99, 3, 0, 57};
+
+        int[] ranks = engine.ranksOf(targets, 1902, 1906);
+        for(int index = 0; index < targets.length; index++)
+            assertEquals(bruteForceRank(store, targets[index], 1902, 1906), ranks[index]);
+    }
+
+    @Test
+    void aHugeKIsClampedToTheVocabulary()
+    {
+        WordStore store = randomStore(50, 3);
+        RankingEngine engine = new RankingEngine(store);
+
+        assertArrayEquals(engine.topIds(50, 1900, 1909), engine.topIds(Integer.MAX_VALUE, 1900, 1909));
+    }
+}
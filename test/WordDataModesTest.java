@@ -0,0 +1,151 @@
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests that every way of holding the data (on the heap, sharded, off the heap and lazily read) answers every query
+ * the same way on a small file. The file has ties, a duplicate year, a word whose lines aren't together and years
+ * which no word was used in.
+ *
+ * @author Kevin Becker
+ */
+class WordDataModesTest
+{
+    private static final String FIXTURE = String.join("\n",
+            "the, 1900, 50", "the, 1901, 70", "the, 1903, 5",
+            "quay, 1850, 12", "quay, 1901, 1",
+            "quite, 1900, 20", "quite, 1901, 20", "quite, 1900, 999",
+            "a, 1899, 8", "a, 1900, 8",
+            "queen, 1900, 20", "queen, 1901, 20",
+            "then, 1850, 12",
+            "the, 1850, 12",
+            "zebra, 1903, 1",
+            "");
+    private static final int FIRST_YEAR = 1848;
+    private static final int LAST_YEAR = 1905;
+
+    @TempDir
+    static Path directory;
+
+    private static WordData heap;
+    private static Map<String, WordData> others = new LinkedHashMap<>();
+    private static List<String> words;
+
+    @BeforeAll
+    static void load() throws Exception
+    {
+        String fileName = directory.resolve("fixture.csv").toString();
+        Files.writeString(Path.of(fileName), FIXTURE);
+
+        heap = new WordDataImpl(fileName);
+        others.put("sharded", new ShardedWordData(List.of(fileName), 3));
+        others.put("off heap", new WordDataImpl(fileName, true));
+        others.put("lazy", new LazyWordData(fileName));
+        words = new ArrayList<>(heap.words());
+        words.add("missing");
+    }
+
+    @Test
+    void sameWords()
+    {
+        for(Map.Entry<String, WordData> other : others.entrySet())
+        {
+            assertEquals(new HashSet<>(heap.words()), new HashSet<>(other.getValue().words()), other.getKey());
+            assertEquals(heap.totalWords(), other.getValue().totalWords(), other.getKey());
+        }
+    }
+
+    @Test
+    void sameCounts()
+    {
+        for(Map.Entry<String, WordData> other : others.entrySet())
+        {
+            WordData data = other.getValue();
+            for(String word : words)
+            {
+                String what = other.getKey() + " " + word;
+                assertEquals(heap.getCountFor(word), data.getCountFor(word), what);
+                for(int year = FIRST_YEAR; year <= LAST_YEAR; year++)
+                {
+                    assertEquals(heap.getCountFor(word, year), data.getCountFor(word, year), what + " " + year);
+                    assertEquals(heap.getCountFor(word, 1850, year), data.getCountFor(word, 1850, year),
+                            what + " 1850-" + year);
+                }
+            }
+        }
+    }
+
+    @Test
+    void sameRanks()
+    {
+        for(Map.Entry<String, WordData> other : others.entrySet())
+        {
+            WordData data = other.getValue();
+            for(String word : words)
+            {
+                String what = other.getKey() + " " + word;
+                assertEquals(heap.getRankFor(word), data.getRankFor(word), what);
+                for(int year = FIRST_YEAR; year <= LAST_YEAR; year++)
+                {
+                    assertEquals(heap.getRankFor(word, year), data.getRankFor(word, year), what + " " + year);
+                    // Asked twice, so both the first answer and the cached one are checked
+                    for(int time = 0; time < 2; time++)
+                        assertEquals(heap.getRankFor(word, 1850, year), data.getRankFor(word, 1850, year),
+                                what + " 1850-" + year);
+                }
+            }
+            assertEquals(toList(heap.getRanksFor(words, 1900, 1901)), toList(data.getRanksFor(words, 1900, 1901)),
+                    other.getKey());
+        }
+    }
+
+    @Test
+    void sameTopWordsAndPrefixes()
+    {
+        for(Map.Entry<String, WordData> other : others.entrySet())
+        {
+            WordData data = other.getValue();
+            String what = other.getKey();
+            assertEquals(heap.topWords(4), data.topWords(4), what);
+            assertEquals(heap.topWords(Integer.MAX_VALUE, 1900, 1901), data.topWords(Integer.MAX_VALUE, 1900, 1901),
+                    what);
+            assertEquals(toList(heap.getRankedCounts()), toList(data.getRankedCounts()), what);
+            assertEquals(toList(heap.getRankedCounts(1850, 1900)), toList(data.getRankedCounts(1850, 1900)), what);
+            for(String prefix : new String[]{"q", "th", "the", "x", ""})
+            {
+                assertEquals(heap.wordsWithPrefix(prefix), data.wordsWithPrefix(prefix), what + " " + prefix);
+                assertEquals(heap.getPrefixCount(prefix, 1850, 1901), data.getPrefixCount(prefix, 1850, 1901),
+                        what + " " + prefix);
+            }
+        }
+    }
+
+    /**
+     * Boxes an array so that a failure shows its values.
+     */
+    private static List<Long> toList(int[] values)
+    {
+        List<Long> list = new ArrayList<>(values.length);
+        for(int value : values)
+            list.add((long)value);
+        return list;
+    }
+
+    private static List<Long> toList(long[] values)
+    {
+        List<Long> list = new ArrayList<>(values.length);
+        for(long value : values)
+            list.add(value);
+        return list;
+    }
+}
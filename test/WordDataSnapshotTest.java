@@ -0,0 +1,107 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests writing a snapshot and reading it back, both onto the heap and mapped.
+ *
+ * @author Kevin Becker
+ */
+class WordDataSnapshotTest
+{
+    private static final String TEXT = "the, 1900, 50\nthe, 1901, 70\nzoë, 1900, 3\nquay, 1850, 12\nquay, 1901, 1\n"
+            + "a, 1899, 8\n";
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Writes a snapshot of a store and reads it back.
+     */
+    private WordDataSnapshot roundTrip(WordStore store, boolean offHeap) throws Exception
+    {
+        WordDataSnapshot written = new WordDataSnapshot();
+        written.store = store;
+        written.overallRankById = new RankingEngine(store).rankAll(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        written.totalWords = 144;
+        String fileName = directory.resolve(offHeap ? "off-heap.snapshot" : "heap.snapshot").toString();
+        written.write(fileName);
+
+        assertTrue(WordDataSnapshot.isSnapshot(fileName));
+        WordDataSnapshot read = WordDataSnapshot.read(fileName, offHeap);
+        assertArrayEquals(written.overallRankById, read.overallRankById);
+        assertEquals(written.totalWords, read.totalWords);
+        return read;
+    }
+
+    @Test
+    void storeIsTheSameAfterARoundTrip() throws Exception
+    {
+        WordStore store = new WordStore.Builder()
+                .add(ParsedChunk.parse(ByteBuffer.wrap(TEXT.getBytes(StandardCharsets.UTF_8))))
+                .build();
+
+        for(boolean offHeap : new boolean[]{false, true})
+        {
+            WordStore read = roundTrip(store, offHeap).store;
+            assertEquals(store.wordCount(), read.wordCount());
+            assertEquals(store.lineCount(), read.lineCount());
+            for(int id = 0; id < store.wordCount(); id++)
+            {
+                assertEquals(store.wordOf(id), read.wordOf(id));
+                assertEquals(id, read.idOf(store.wordOf(id)));
+                assertEquals(store.firstLine(id), read.firstLine(id));
+                assertEquals(store.endLine(id), read.endLine(id));
+                assertEquals(store.getCount(id), read.getCount(id));
+                for(int year = 1849; year <= 1902; year++)
+                {
+                    assertEquals(store.getCount(id, year), read.getCount(id, year));
+                    assertEquals(store.getCount(id, 1849, year), read.getCount(id, 1849, year));
+                }
+            }
+        }
+    }
+
+    @Test
+    void savingOverAMappedSnapshotLeavesTheMappingWhole() throws Exception
+    {
+        WordStore store = new WordStore.Builder()
+                .add(ParsedChunk.parse(ByteBuffer.wrap(TEXT.getBytes(StandardCharsets.UTF_8))))
+                .build();
+        WordDataSnapshot mapped = roundTrip(store, true);
+
+        // Saved back over the file it is mapped from, as "save" does after --off-heap
+        roundTrip(mapped.store, true);
+        for(int id = 0; id < store.wordCount(); id++)
+        {
+            assertEquals(store.wordOf(id), mapped.store.wordOf(id));
+            assertEquals(store.getCount(id, 1849, 1902), mapped.store.getCount(id, 1849, 1902));
+        }
+        try(Stream<Path> files = Files.list(directory))
+        {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void otherFilesAreNotSnapshots() throws Exception
+    {
+        Path text = directory.resolve("words.csv");
+        Files.writeString(text, TEXT);
+
+        assertFalse(WordDataSnapshot.isSnapshot(text.toString()));
+        assertFalse(WordDataSnapshot.isSnapshot(directory.resolve("missing").toString()));
+        assertThrows(IllegalArgumentException.class, () -> WordDataSnapshot.read(text.toString()));
+    }
+}
@@ -0,0 +1,58 @@
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests building a WordStore out of parsed chunks.
+ *
+ * @author Kevin Becker
+ */
+class WordStoreTest
+{
+    /**
+     * Parses some text as a whole block.
+     */
+    private static ParsedChunk parse(String text)
+    {
+        return ParsedChunk.parse(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void linesAreGatheredAndSortedByYear()
+    {
+        WordStore.Builder builder = new WordStore.Builder()
+                .add(parse("a, 1902, 3\nb, 1900, 10\na, 1900, 1\n"))
+                .add(parse("a, 1901, 2\n"));
+        WordStore store = builder.build();
+        int a = store.idOf("a");
+
+        assertEquals(2, store.wordCount());
+        assertEquals(0, a);
+        assertEquals(1900, store.yearOf(store.firstLine(a)));
+        assertEquals(1902, store.yearOf(store.endLine(a) - 1));
+        assertEquals(6, store.getCount(a));
+        assertEquals(2, store.getCount(a, 1901));
+        assertEquals(5, store.getCount(a, 1901, 1905));
+        assertEquals(0, store.getCount(a, 1800, 1899));
+        assertEquals(16, builder.getTotalOccurrences());
+    }
+
+    @Test
+    void firstValueOfADuplicateYearIsKept()
+    {
+        WordStore.Builder builder = new WordStore.Builder()
+                .add(parse("a, 1900, 5\na, 1901, 1\na, 1900, 7\n"))
+                .add(parse("a, 1900, 9\nb, 1900, 4\n"));
+        WordStore store = builder.build();
+        int a = store.idOf("a");
+
+        assertEquals(5, store.getCount(a, 1900));
+        assertEquals(6, store.getCount(a));
+        assertEquals(2, store.endLine(a) - store.firstLine(a));
+        assertEquals(2, builder.getDuplicateYears());
+        assertEquals(4, store.getCount(store.idOf("b")));
+    }
+}